@@ -0,0 +1,103 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Binds the elements of a request body one at a time, as the controller asks
+ * for them: the values of a top-level array or, for NDJSON, each top-level
+ * value. Only the element being bound is held in memory, so bulk uploads are
+ * read in constant memory.
+ *
+ * A malformed element fails when it is reached, with the JsonParseException
+ * Gson throws. Each element is bound with the locale of the request as the
+ * {@link DeserializationLocale}, whichever thread asks for it.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+class BodyIterator<T> implements Iterator<T> {
+
+	private final JsonReader reader;
+
+	private final Gson gson;
+
+	private final Type type;
+
+	private final boolean array;
+
+	private final Locale locale;
+
+	private boolean exhausted;
+
+	BodyIterator(JsonReader reader, Gson gson, Type type, boolean array, Locale locale) throws IOException {
+		this.reader = reader;
+		this.gson = gson;
+		this.type = type;
+		this.array = array;
+		this.locale = locale;
+		if (array) {
+			reader.beginArray();
+		}
+	}
+
+	public boolean hasNext() {
+		if (exhausted) {
+			return false;
+		}
+		try {
+			if (reader.peek() != (array ? JsonToken.END_ARRAY : JsonToken.END_DOCUMENT)) {
+				return true;
+			}
+			if (array) {
+				reader.endArray();
+			}
+		} catch (EOFException e) {
+			if (array) {
+				throw new JsonSyntaxException(e);
+			}
+			// an empty NDJSON body
+		} catch (MalformedJsonException e) {
+			throw new JsonSyntaxException(e);
+		} catch (IOException e) {
+			throw new JsonIOException(e);
+		}
+		exhausted = true;
+		finished();
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Locale previous = DeserializationLocale.use(locale);
+		try {
+			return (T) gson.fromJson(reader, type);
+		} finally {
+			DeserializationLocale.restore(previous);
+		}
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Called once, after the last element was read.
+	 */
+	protected void finished() {
+	}
+}
@@ -0,0 +1,28 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import br.com.caelum.vraptor.deserialization.gson.BodyLimits.Limit;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * Thrown while reading a request body that goes over one of the
+ * {@link BodyLimits}, before the rest of it is read.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public class BodyLimitExceededException extends JsonParseException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Limit limit;
+
+	public BodyLimitExceededException(Limit limit, long maximum) {
+		super("Request body exceeds the " + limit + " limit of " + maximum);
+		this.limit = limit;
+	}
+
+	public Limit getLimit() {
+		return limit;
+	}
+}
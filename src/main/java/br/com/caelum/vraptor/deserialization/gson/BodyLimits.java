@@ -0,0 +1,202 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.serialization.gson.GsonConfiguration;
+
+/**
+ * Limits of the request bodies read by GsonDeserialization, checked while
+ * reading: a body is refused as soon as it goes over one of them, without
+ * reading the rest. A declared Content-Length over the byte limit is refused
+ * before reading anything. The limits come from the GsonConfiguration, and a
+ * negative value disables a limit.
+ *
+ * How often each limit was hit is published over JMX as
+ * br.com.caelum.vraptor.gson:context="/app",type=BodyLimits.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class BodyLimits implements BodyLimitsMBean {
+
+	public enum Limit {
+		BYTES, DEPTH, ARRAY_LENGTH, STRING_LENGTH
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(BodyLimits.class);
+
+	private final long maxBytes;
+
+	private final int maxDepth;
+
+	private final long maxArrayLength;
+
+	private final int maxStringLength;
+
+	private final AtomicLongArray exceeded = new AtomicLongArray(Limit.values().length);
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	private ObjectName name;
+
+	public BodyLimits(GsonConfiguration configuration, ServletContext servletContext) {
+		this.maxBytes = configuration.maxBodyBytes();
+		this.maxDepth = configuration.maxBodyDepth();
+		this.maxArrayLength = configuration.maxArrayLength();
+		this.maxStringLength = configuration.maxStringLength();
+		register(servletContext.getContextPath());
+	}
+
+	/**
+	 * The body, failing as soon as more than the byte limit is read.
+	 *
+	 * @param contentLength declared length of the body, or -1
+	 */
+	public InputStream limit(InputStream body, long contentLength) {
+		if (maxBytes < 0) {
+			return body;
+		}
+		if (contentLength > maxBytes) {
+			throw exceeded(Limit.BYTES, maxBytes);
+		}
+		return new LimitedInputStream(body);
+	}
+
+	void checkDepth(int depth) {
+		if (maxDepth >= 0 && depth > maxDepth) {
+			throw exceeded(Limit.DEPTH, maxDepth);
+		}
+	}
+
+	void checkArrayLength(long length) {
+		if (maxArrayLength >= 0 && length > maxArrayLength) {
+			throw exceeded(Limit.ARRAY_LENGTH, maxArrayLength);
+		}
+	}
+
+	void checkStringLength(long length) {
+		if (maxStringLength >= 0 && length > maxStringLength) {
+			throw exceeded(Limit.STRING_LENGTH, maxStringLength);
+		}
+	}
+
+	/**
+	 * Refuses strings whose UTF-8 encoding alone proves them too long, before
+	 * they are read. A char takes at most three bytes.
+	 */
+	void checkUtf8Length(long bytes) {
+		if (maxStringLength >= 0 && bytes > 3L * maxStringLength) {
+			throw exceeded(Limit.STRING_LENGTH, maxStringLength);
+		}
+	}
+
+	private BodyLimitExceededException exceeded(Limit limit, long maximum) {
+		exceeded.incrementAndGet(limit.ordinal());
+		return new BodyLimitExceededException(limit, maximum);
+	}
+
+	public long getBytesExceeded() {
+		return exceeded.get(Limit.BYTES.ordinal());
+	}
+
+	public long getDepthExceeded() {
+		return exceeded.get(Limit.DEPTH.ordinal());
+	}
+
+	public long getArrayLengthExceeded() {
+		return exceeded.get(Limit.ARRAY_LENGTH.ordinal());
+	}
+
+	public long getStringLengthExceeded() {
+		return exceeded.get(Limit.STRING_LENGTH.ordinal());
+	}
+
+	@PreDestroy
+	public void unregister() {
+		if (name != null) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException e) {
+				logger.debug("Unable to unregister " + name, e);
+			}
+		}
+	}
+
+	private void register(String contextPath) {
+		String context = contextPath == null || contextPath.length() == 0 ? "/" : contextPath;
+		try {
+			ObjectName candidate = new ObjectName("br.com.caelum.vraptor.gson:context=" + ObjectName.quote(context)
+					+ ",type=BodyLimits");
+			if (server.isRegistered(candidate)) {
+				server.unregisterMBean(candidate);
+			}
+			server.registerMBean(this, candidate);
+			name = candidate;
+		} catch (JMException e) {
+			logger.warn("Unable to publish the body limits", e);
+		}
+	}
+
+	private final class LimitedInputStream extends FilterInputStream {
+
+		private long remaining = maxBytes;
+
+		LimitedInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if (read >= 0) {
+				count(1);
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, remaining < length ? (int) (remaining + 1) : length);
+			if (read > 0) {
+				count(read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long count) throws IOException {
+			long skipped = super.skip(remaining < count ? remaining + 1 : count);
+			count(skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		private void count(long read) {
+			remaining -= read;
+			if (remaining < 0) {
+				throw exceeded(Limit.BYTES, maxBytes);
+			}
+		}
+	}
+}
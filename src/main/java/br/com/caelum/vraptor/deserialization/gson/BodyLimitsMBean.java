@@ -0,0 +1,19 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+/**
+ * How many request bodies were refused by each of the body limits.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public interface BodyLimitsMBean {
+
+	long getBytesExceeded();
+
+	long getDepthExceeded();
+
+	long getArrayLengthExceeded();
+
+	long getStringLengthExceeded();
+
+}
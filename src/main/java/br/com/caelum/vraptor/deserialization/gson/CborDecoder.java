@@ -0,0 +1,290 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Decodes a CBOR (RFC 7049) data item into the equivalent JsonElement, so it
+ * is bound by Gson exactly like JSON text. Tags other than bignums are
+ * ignored, and byte strings are not supported, since JSON has no equivalent.
+ * The {@link BodyLimits} are checked against the declared lengths, before
+ * anything is allocated for them.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class CborDecoder {
+
+	private static final int BREAK = 0xff;
+
+	private static final long INDEFINITE = -1;
+
+	private final InputStream in;
+
+	private final BodyLimits limits;
+
+	private final byte[] buffer = new byte[8192];
+
+	private int position;
+
+	private int limit;
+
+	private int depth;
+
+	CborDecoder(InputStream in, BodyLimits limits) {
+		this.in = in;
+		this.limits = limits;
+	}
+
+	JsonElement decode() throws IOException {
+		return decode(read());
+	}
+
+	private JsonElement decode(int initial) throws IOException {
+		int major = initial >>> 5;
+		int info = initial & 0x1f;
+
+		switch (major) {
+		case 0:
+			return integer(argument(info), false);
+		case 1:
+			return integer(argument(info), true);
+		case 2:
+			throw new JsonParseException("CBOR byte strings are not supported");
+		case 3:
+			return new JsonPrimitive(text(info));
+		case 4:
+			return array(argument(info));
+		case 5:
+			return object(argument(info));
+		case 6:
+			return tagged(argument(info));
+		default:
+			return simple(info);
+		}
+	}
+
+	private JsonElement integer(long value, boolean negative) {
+		if (value >= 0) {
+			return new JsonPrimitive(negative ? -1 - value : value);
+		}
+		// above Long.MAX_VALUE as an unsigned long
+		BigInteger unsigned = BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63);
+		return new JsonPrimitive(negative ? unsigned.not() : unsigned);
+	}
+
+	private String text(int info) throws IOException {
+		long length = argument(info);
+		if (length != INDEFINITE) {
+			return checked(new String(utf8(length), "UTF-8"));
+		}
+
+		StringBuilder chunks = new StringBuilder();
+		while (peek() != BREAK) {
+			int initial = read();
+			if (initial >>> 5 != 3 || (initial & 0x1f) == 31) {
+				throw new JsonParseException("Malformed CBOR text string");
+			}
+			chunks.append(new String(utf8(argument(initial & 0x1f)), "UTF-8"));
+			limits.checkStringLength(chunks.length());
+		}
+		read();
+		return chunks.toString();
+	}
+
+	private byte[] utf8(long length) throws IOException {
+		limits.checkUtf8Length(length);
+		return bytes(length);
+	}
+
+	private String checked(String text) {
+		limits.checkStringLength(text.length());
+		return text;
+	}
+
+	private JsonArray array(long length) throws IOException {
+		enter();
+		JsonArray array = new JsonArray();
+		if (length == INDEFINITE) {
+			long count = 0;
+			while (peek() != BREAK) {
+				limits.checkArrayLength(++count);
+				array.add(decode());
+			}
+			read();
+		} else {
+			limits.checkArrayLength(length);
+			for (long i = 0; i < length; i++) {
+				array.add(decode());
+			}
+		}
+		depth--;
+		return array;
+	}
+
+	private JsonObject object(long length) throws IOException {
+		enter();
+		JsonObject object = new JsonObject();
+		if (length == INDEFINITE) {
+			while (peek() != BREAK) {
+				object.add(name(), decode());
+			}
+			read();
+		} else {
+			for (long i = 0; i < length; i++) {
+				object.add(name(), decode());
+			}
+		}
+		depth--;
+		return object;
+	}
+
+	private String name() throws IOException {
+		JsonElement name = decode();
+		if (!name.isJsonPrimitive()) {
+			throw new JsonParseException("CBOR map keys must be strings or numbers");
+		}
+		return name.getAsString();
+	}
+
+	/**
+	 * The item after a tag. Only the innermost of a chain of tags is taken
+	 * into account, and the chain is read in a loop, since it costs no depth.
+	 */
+	private JsonElement tagged(long tag) throws IOException {
+		int initial = read();
+		while (initial >>> 5 == 6) {
+			tag = argument(initial & 0x1f);
+			initial = read();
+		}
+		if (tag != 2 && tag != 3) {
+			return decode(initial);
+		}
+		if (initial >>> 5 != 2 || (initial & 0x1f) == 31) {
+			throw new JsonParseException("Malformed CBOR bignum");
+		}
+		BigInteger value = new BigInteger(1, bytes(argument(initial & 0x1f)));
+		return new JsonPrimitive(tag == 2 ? value : value.not());
+	}
+
+	private JsonElement simple(int info) throws IOException {
+		switch (info) {
+		case 20:
+			return new JsonPrimitive(false);
+		case 21:
+			return new JsonPrimitive(true);
+		case 22:
+		case 23:
+			return JsonNull.INSTANCE;
+		case 25:
+			return new JsonPrimitive(half((int) unsigned(2)));
+		case 26:
+			return new JsonPrimitive(Float.intBitsToFloat((int) unsigned(4)));
+		case 27:
+			return new JsonPrimitive(Double.longBitsToDouble(unsigned(8)));
+		default:
+			throw new JsonParseException("Unexpected CBOR simple value " + info);
+		}
+	}
+
+	private static double half(int bits) {
+		int exponent = (bits >> 10) & 0x1f;
+		int mantissa = bits & 0x3ff;
+		double value;
+		if (exponent == 0) {
+			value = mantissa * Math.pow(2, -24);
+		} else if (exponent == 31) {
+			value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+		} else {
+			value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+		}
+		return (bits & 0x8000) == 0 ? value : -value;
+	}
+
+	private long argument(int info) throws IOException {
+		if (info < 24) {
+			return info;
+		}
+		switch (info) {
+		case 24:
+			return unsigned(1);
+		case 25:
+			return unsigned(2);
+		case 26:
+			return unsigned(4);
+		case 27:
+			return unsigned(8);
+		case 31:
+			return INDEFINITE;
+		default:
+			throw new JsonParseException("Malformed CBOR item");
+		}
+	}
+
+	private long unsigned(int count) throws IOException {
+		long value = 0;
+		for (int i = 0; i < count; i++) {
+			value = (value << 8) | read();
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a string of the given length, growing as the bytes arrive rather
+	 * than trusting the declared length.
+	 */
+	private byte[] bytes(long length) throws IOException {
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new JsonParseException("CBOR string too long");
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(length, buffer.length));
+		long remaining = length;
+		while (remaining > 0) {
+			if (position == limit) {
+				fill();
+			}
+			int count = (int) Math.min(remaining, limit - position);
+			out.write(buffer, position, count);
+			position += count;
+			remaining -= count;
+		}
+		return out.toByteArray();
+	}
+
+	private void enter() {
+		limits.checkDepth(++depth);
+	}
+
+	private int peek() throws IOException {
+		if (position == limit) {
+			fill();
+		}
+		return buffer[position] & 0xff;
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			fill();
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	private void fill() throws IOException {
+		int count = in.read(buffer);
+		if (count <= 0) {
+			throw new EOFException("Truncated CBOR data");
+		}
+		position = 0;
+		limit = count;
+	}
+}
@@ -0,0 +1,53 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+import javax.servlet.http.HttpServletRequest;
+
+import br.com.caelum.vraptor.core.Localization;
+import br.com.caelum.vraptor.deserialization.Deserializes;
+import br.com.caelum.vraptor.http.ParameterNameProvider;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Deserializes request bodies sent as CBOR (application/cbor), binding them
+ * with the same adapters as {@link GsonDeserialization}. Iterator parameters
+ * are not supported.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+
+@Deserializes({ "application/cbor", "cbor" })
+public class CborDeserialization extends GsonDeserialization {
+
+	public CborDeserialization(ParameterNameProvider paramNameProvider, Collection<JsonDeserializer<?>> adapters,
+			Localization localization, GsonDeserializationEngine engine, HttpServletRequest request,
+			JsonMetrics metrics, BodyLimits limits) {
+		super(paramNameProvider, adapters, localization, engine, request, metrics, limits);
+	}
+
+	/**
+	 * Decodes the whole body, within the byte limit, and binds it with
+	 * Gson.fromJson(JsonElement, Type).
+	 */
+	@Override
+	protected JsonElement readTree(InputStream inputStream) throws IOException {
+		return new CborDecoder(inputStream, limits).decode();
+	}
+
+	/**
+	 * CBOR bodies are only decoded whole, so Iterator parameters, which would
+	 * read them without the byte limit, are refused.
+	 */
+	@Override
+	protected JsonReader openReader(InputStream inputStream) {
+		throw new IllegalArgumentException("Iterator parameters are only supported for JSON bodies, not CBOR");
+	}
+}
@@ -0,0 +1,47 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import java.util.Locale;
+
+/**
+ * The locale of the request body being read on this thread. Deserialization
+ * Gson instances are shared by every request, so adapters whose result
+ * depends on the locale, such as CalendarDeserializer, ask for it while they
+ * run instead of keeping the one of the request that built them.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public final class DeserializationLocale {
+
+	private static final ThreadLocal<Locale> CURRENT = new ThreadLocal<Locale>();
+
+	private DeserializationLocale() {
+	}
+
+	/**
+	 * The locale of the body being read, or the default locale outside a
+	 * deserialization.
+	 */
+	public static Locale current() {
+		Locale locale = CURRENT.get();
+		return locale == null ? Locale.getDefault() : locale;
+	}
+
+	/**
+	 * Makes locale the current one until {@link #restore(Locale)} is called
+	 * with the returned previous locale.
+	 */
+	static Locale use(Locale locale) {
+		Locale previous = CURRENT.get();
+		CURRENT.set(locale);
+		return previous;
+	}
+
+	static void restore(Locale previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+}
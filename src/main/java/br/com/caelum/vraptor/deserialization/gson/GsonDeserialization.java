@@ -2,26 +2,35 @@ package br.com.caelum.vraptor.deserialization.gson;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map.Entry;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import br.com.caelum.vraptor.core.Localization;
 import br.com.caelum.vraptor.deserialization.Deserializer;
 import br.com.caelum.vraptor.deserialization.Deserializes;
 import br.com.caelum.vraptor.http.ParameterNameProvider;
 import br.com.caelum.vraptor.resource.ResourceMethod;
+import br.com.caelum.vraptor.serialization.gson.CacheCounter;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
 import br.com.caelum.vraptor.view.ResultException;
 
+import com.google.common.io.CountingInputStream;
+import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 /**
  * 
@@ -29,81 +38,238 @@ import com.google.gson.JsonParser;
  * @author Guilherme Mangabeira
  */
 
-@Deserializes({ "application/json", "json" })
+@Deserializes({ "application/json", "json", "application/x-ndjson", "ndjson" })
 public class GsonDeserialization implements Deserializer {
 
 	private static final Logger logger = LoggerFactory.getLogger(GsonDeserialization.class);
 
+	private static final String DEFAULT_CHARSET = "UTF-8";
+
+	private static final String NDJSON = "application/x-ndjson";
+
 	private final ParameterNameProvider paramNameProvider;
 
 	private final Collection<JsonDeserializer<?>> adapters;
 
-	public GsonDeserialization(ParameterNameProvider paramNameProvider, Collection<JsonDeserializer<?>> adapters) {
+	private final Localization localization;
+
+	private final GsonDeserializationEngine engine;
+
+	private final HttpServletRequest request;
+
+	private final JsonMetrics metrics;
+
+	protected final BodyLimits limits;
+
+	private final CacheCounter cacheCounter = new CacheCounter();
+
+	public GsonDeserialization(ParameterNameProvider paramNameProvider, Collection<JsonDeserializer<?>> adapters,
+			Localization localization, GsonDeserializationEngine engine, HttpServletRequest request,
+			JsonMetrics metrics, BodyLimits limits) {
 		this.paramNameProvider = paramNameProvider;
 		this.adapters = adapters;
+		this.localization = localization;
+		this.engine = engine;
+		this.request = request;
+		this.metrics = metrics;
+		this.limits = limits;
 	}
 
 	public Object[] deserialize(InputStream inputStream, ResourceMethod method) {
 		Method jMethod = method.getMethod();
-		Class<?>[] types = jMethod.getParameterTypes();
+		Type[] types = engine.parameterTypesFor(method);
 		if (types.length == 0) {
 			throw new IllegalArgumentException(
 					"Methods that consumes representations must receive just one argument");
 		}
 
+		Measurement measurement = metrics.isEnabled() ? new Measurement(method) : null;
+
 		Gson gson = getGson();
+		Locale locale = getLocale();
 
 		Object[] params = new Object[types.length];
-		String[] parameterNames = paramNameProvider.parameterNamesFor(jMethod);
 
+		Locale previous = DeserializationLocale.use(locale);
 		try {
-			String content = getContentOfStream(inputStream);
-			logger.debug("json retrieved: " + content);
+			boolean streamed = types.length == 1 && isIterator(types[0]);
+			InputStream body = streamed ? inputStream : limits.limit(inputStream, request.getContentLength());
+			if (measurement != null) {
+				body = measurement.count(body);
+			}
 
-			JsonParser parser = new JsonParser();
-			JsonObject root = (JsonObject) parser.parse(content);
+			if (streamed) {
+				logger.debug("streaming json body to the parameter of " + jMethod.getName());
+				params[0] = stream(openReader(body), gson, types[0], locale, measurement);
+				return params;
+			}
 
-			for (int i = 0; i < types.length; i++) {
-				String name = parameterNames[i];
-				JsonElement node = root.get(name);
-				if (node != null) {
-					params[i] = gson.fromJson(node, types[i]);
-				}
+			JsonElement tree = readTree(body);
+			if (tree != null) {
+				bindTree(tree, gson, types, jMethod, params);
+			} else if (types.length == 1 && isWithoutRoot(jMethod)) {
+				logger.debug("binding json body to the parameter of " + jMethod.getName());
+				params[0] = gson.fromJson(openReader(body), types[0]);
+			} else {
+				bindByName(openReader(body), gson, types, paramNameProvider.parameterNamesFor(jMethod), params);
 			}
 		} catch (Exception e) {
 			throw new ResultException("Unable to deserialize data", e);
+		} finally {
+			DeserializationLocale.restore(previous);
+		}
+
+		if (measurement != null) {
+			measurement.report();
 		}
 
 		return params;
 	}
 
-	protected Gson getGson() {
-		GsonBuilder builder = new GsonBuilder();
+	/**
+	 * An Iterator binding each element of the body only when the controller
+	 * asks for it. The body is a top-level array or, when sent as
+	 * application/x-ndjson, a sequence of values. Its elements are not limited
+	 * in number nor, as a whole, in bytes; the other limits still apply to
+	 * each element.
+	 */
+	private Iterator<?> stream(JsonReader reader, Gson gson, Type type, Locale locale,
+			final Measurement measurement) throws IOException {
+		Type elementType = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()[0]
+				: Object.class;
+		String contentType = request.getContentType();
+		boolean array = contentType == null || !contentType.startsWith(NDJSON);
+		if (reader instanceof LimitedJsonReader) {
+			((LimitedJsonReader) reader).streamed();
+		}
+
+		return new BodyIterator<Object>(reader, gson, elementType, array, locale) {
+			@Override
+			protected void finished() {
+				if (measurement != null) {
+					measurement.report();
+				}
+			}
+		};
+	}
+
+	private void bindByName(JsonReader reader, Gson gson, Type[] types, String[] parameterNames, Object[] params)
+			throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			int index = indexOf(parameterNames, name);
+			if (index < 0) {
+				reader.skipValue();
+			} else {
+				logger.debug("binding json parameter " + name);
+				params[index] = gson.fromJson(reader, types[index]);
+			}
+		}
+		reader.endObject();
+	}
+
+	private void bindTree(JsonElement tree, Gson gson, Type[] types, Method method, Object[] params) {
+		if (types.length == 1 && isWithoutRoot(method)) {
+			logger.debug("binding decoded body to the parameter of " + method.getName());
+			params[0] = gson.fromJson(tree, types[0]);
+			return;
+		}
 
-		for (JsonDeserializer<?> adapter : adapters) {
-			builder.registerTypeHierarchyAdapter(getAdapterType(adapter), adapter);
+		String[] parameterNames = paramNameProvider.parameterNamesFor(method);
+		for (Entry<String, JsonElement> property : tree.getAsJsonObject().entrySet()) {
+			int index = indexOf(parameterNames, property.getKey());
+			if (index >= 0) {
+				logger.debug("binding decoded parameter " + property.getKey());
+				params[index] = gson.fromJson(property.getValue(), types[index]);
+			}
 		}
+	}
 
-		return builder.create();
+	private boolean isIterator(Type type) {
+		return TypeToken.of(type).getRawType() == Iterator.class;
+	}
+
+	private boolean isWithoutRoot(Method method) {
+		WithoutRoot withoutRoot = method.getAnnotation(WithoutRoot.class);
+		if (withoutRoot == null) {
+			return engine.getConfiguration().deserializeWithoutRoot();
+		}
+		return withoutRoot.value();
+	}
+
+	/**
+	 * The request body decoded whole, for encodings of JSON read without a
+	 * JsonReader, or null to read it from {@link #openReader(InputStream)}.
+	 * The body has already been limited to maxBodyBytes().
+	 */
+	protected JsonElement readTree(InputStream inputStream) throws IOException {
+		return null;
+	}
+
+	/**
+	 * The reader of the request body, and of Iterator parameters.
+	 */
+	protected JsonReader openReader(InputStream inputStream) throws IOException {
+		JsonReader reader = new LimitedJsonReader(new InputStreamReader(inputStream, getCharset()), limits);
+		reader.setLenient(true);
+		return reader;
+	}
+
+	protected Gson getGson() {
+		return engine.gsonFor(cacheCounter, adapters);
 	}
 
-	private Class<?> getAdapterType(JsonDeserializer<?> adapter) {
-		Type[] genericInterfaces = adapter.getClass().getGenericInterfaces();
-		ParameterizedType type = (ParameterizedType) genericInterfaces[0];
-		Type actualType = type.getActualTypeArguments()[0];
+	/**
+	 * The locale adapters read from {@link DeserializationLocale} while this
+	 * body is bound.
+	 */
+	protected Locale getLocale() {
+		Locale locale = localization.getLocale();
+		return locale == null ? Locale.getDefault() : locale;
+	}
 
-		return (Class<?>) actualType;
+	private String getCharset() {
+		String charset = request.getCharacterEncoding();
+		return charset == null ? DEFAULT_CHARSET : charset;
 	}
 
-	private String getContentOfStream(InputStream input) throws IOException {
-		StringBuilder content = new StringBuilder();
+	/**
+	 * Latency, bytes and cache use of one deserialization, reported when the
+	 * body was read: for a streamed body, after its last element.
+	 */
+	private final class Measurement {
+
+		private final ResourceMethod method;
+
+		private final long start = System.nanoTime();
+
+		private final int hits = cacheCounter.getHits();
 
-		byte[] buffer = new byte[1024];
-		int readed = 0;
-		while ((readed = input.read(buffer)) != -1) {
-			content.append(new String(buffer, 0, readed));
+		private final int misses = cacheCounter.getMisses();
+
+		private CountingInputStream counting;
+
+		Measurement(ResourceMethod method) {
+			this.method = method;
 		}
 
-		return content.toString();
+		InputStream count(InputStream body) {
+			return counting = new CountingInputStream(body);
+		}
+
+		void report() {
+			metrics.deserialized(method, System.nanoTime() - start, counting.getCount(), cacheCounter.getHits() - hits,
+					cacheCounter.getMisses() - misses);
+		}
+	}
+
+	private int indexOf(String[] parameterNames, String name) {
+		for (int i = 0; i < parameterNames.length; i++) {
+			if (parameterNames[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 }
@@ -0,0 +1,123 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+import br.com.caelum.vraptor.serialization.gson.AbstractGsonEngine;
+import br.com.caelum.vraptor.serialization.gson.CacheCounter;
+import br.com.caelum.vraptor.serialization.gson.GeneratedAdapters;
+import br.com.caelum.vraptor.serialization.gson.GsonAdapters;
+import br.com.caelum.vraptor.serialization.gson.GsonConfiguration;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.TypeAdapterFactory;
+
+/**
+ * Application scoped holder of the Gson instances used for deserialization,
+ * built once per adapter set and shared between requests, as told in
+ * {@link AbstractGsonEngine}. Nothing else of the request changes how a body
+ * is read: adapters that depend on its locale, such as CalendarDeserializer,
+ * read it from {@link DeserializationLocale} while they run. The
+ * {@link GsonAdapters} components are registered too. The generic parameter
+ * types of each resource method are also resolved once and kept.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class GsonDeserializationEngine extends AbstractGsonEngine<JsonDeserializer<?>> {
+
+	private static final int MAXIMUM_CACHED_INSTANCES = 64;
+
+	private final ConcurrentMap<Method, ParameterTypes> parameterTypes = new ConcurrentHashMap<Method, ParameterTypes>();
+
+	public GsonDeserializationEngine(GsonConfiguration configuration, GsonAdapters adapters) {
+		super(configuration, adapters, JsonDeserializer.class, MAXIMUM_CACHED_INSTANCES);
+	}
+
+	public Gson gsonFor(Collection<JsonDeserializer<?>> deserializers) {
+		return gsonFor(new CacheCounter(), deserializers);
+	}
+
+	/**
+	 * Same as {@link #gsonFor(Collection)}, counting the lookup as a hit or a
+	 * miss.
+	 */
+	public Gson gsonFor(CacheCounter counter, final Collection<JsonDeserializer<?>> deserializers) {
+		return gsonFor(counter, deserializers, Collections.emptyList(), new Callable<Gson>() {
+			public Gson call() {
+				return create(deserializers);
+			}
+		});
+	}
+
+	/**
+	 * The full generic types of the parameters of a resource method, with type
+	 * variables resolved against its controller, such as T of a generic base
+	 * controller. Unresolved variables fall back to their erasure. The array
+	 * is shared and must not be changed.
+	 */
+	public Type[] parameterTypesFor(ResourceMethod method) {
+		Method javaMethod = method.getMethod();
+		Class<?> controller = method.getResource() == null ? javaMethod.getDeclaringClass() : method.getResource()
+				.getType();
+
+		ParameterTypes types = parameterTypes.get(javaMethod);
+		if (types == null || types.controller != controller) {
+			types = new ParameterTypes(controller, javaMethod);
+			parameterTypes.put(javaMethod, types);
+		}
+		return types.types;
+	}
+
+	protected Gson create(Collection<JsonDeserializer<?>> deserializers) {
+		GsonBuilder builder = new GsonBuilder();
+
+		List<Class<?>> types = new ArrayList<Class<?>>();
+		for (JsonDeserializer<?> adapter : GsonAdapters.inCanonicalOrder(deserializers)) {
+			Class<?> type = getAdapterType(adapter);
+			builder.registerTypeHierarchyAdapter(type, adapter);
+			types.add(type);
+		}
+		types.addAll(adapters.getAdaptedTypes());
+
+		builder.registerTypeAdapterFactory(new GeneratedAdapters(types));
+		for (TypeAdapterFactory factory : adapters.getFactories()) {
+			builder.registerTypeAdapterFactory(factory);
+		}
+
+		return builder.create();
+	}
+
+	private static final class ParameterTypes {
+
+		private final Class<?> controller;
+
+		private final Type[] types;
+
+		ParameterTypes(Class<?> controller, Method method) {
+			this.controller = controller;
+			this.types = method.getGenericParameterTypes();
+			Class<?>[] erased = method.getParameterTypes();
+			for (int i = 0; i < types.length; i++) {
+				Type type = TypeToken.of(controller).resolveType(types[i]).getType();
+				types[i] = type instanceof TypeVariable ? erased[i] : type;
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * JsonReader checking the {@link BodyLimits} on each token, so an oversized
+ * array or a deep nesting is refused when it is reached, before the values
+ * are bound. Skipped values are read through the same checks. The elements
+ * of a streamed top-level array are not counted, since they are not held in
+ * memory together.
+ *
+ * Names and strings are only checked once JsonReader has read them whole, so
+ * the memory a long string takes is bounded by maxBodyBytes(), not by
+ * maxStringLength(), and a streamed body only refuses it after reading it.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class LimitedJsonReader extends JsonReader {
+
+	private static final long UNCOUNTED = -1;
+
+	private final BodyLimits limits;
+
+	/**
+	 * Elements read so far by each open array, or UNCOUNTED.
+	 */
+	private long[] counts = new long[32];
+
+	private int depth;
+
+	private boolean streamed;
+
+	LimitedJsonReader(Reader in, BodyLimits limits) {
+		super(in);
+		this.limits = limits;
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		value();
+		super.beginArray();
+		push(streamed && depth == 0 ? UNCOUNTED : 0);
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		super.endArray();
+		depth--;
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		value();
+		super.beginObject();
+		push(UNCOUNTED);
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		super.endObject();
+		depth--;
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		String name = super.nextName();
+		limits.checkStringLength(name.length());
+		return name;
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		value();
+		String value = super.nextString();
+		limits.checkStringLength(value.length());
+		return value;
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		value();
+		return super.nextBoolean();
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		value();
+		super.nextNull();
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		value();
+		return super.nextDouble();
+	}
+
+	@Override
+	public long nextLong() throws IOException {
+		value();
+		return super.nextLong();
+	}
+
+	@Override
+	public int nextInt() throws IOException {
+		value();
+		return super.nextInt();
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		int open = 0;
+		do {
+			JsonToken token = peek();
+			if (token == JsonToken.BEGIN_ARRAY) {
+				beginArray();
+				open++;
+			} else if (token == JsonToken.BEGIN_OBJECT) {
+				beginObject();
+				open++;
+			} else if (token == JsonToken.END_ARRAY) {
+				endArray();
+				open--;
+			} else if (token == JsonToken.END_OBJECT) {
+				endObject();
+				open--;
+			} else if (token == JsonToken.NAME) {
+				nextName();
+			} else if (token == JsonToken.BOOLEAN) {
+				nextBoolean();
+			} else if (token == JsonToken.NULL) {
+				nextNull();
+			} else if (token == JsonToken.END_DOCUMENT) {
+				return;
+			} else {
+				nextString();
+			}
+		} while (open > 0);
+	}
+
+	/**
+	 * Marks the top-level array as streamed to an Iterator parameter.
+	 */
+	void streamed() {
+		streamed = true;
+	}
+
+	/**
+	 * Counts a value starting in the innermost array.
+	 */
+	private void value() {
+		if (depth > 0 && counts[depth - 1] != UNCOUNTED) {
+			limits.checkArrayLength(++counts[depth - 1]);
+		}
+	}
+
+	private void push(long count) {
+		limits.checkDepth(depth + 1);
+		if (depth == counts.length) {
+			long[] grown = new long[depth * 2];
+			System.arraycopy(counts, 0, grown, 0, depth);
+			counts = grown;
+		}
+		counts[depth++] = count;
+	}
+}
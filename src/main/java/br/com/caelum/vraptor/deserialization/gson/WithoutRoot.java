@@ -0,0 +1,33 @@
+package br.com.caelum.vraptor.deserialization.gson;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds the whole request body to the only parameter of the annotated method,
+ * instead of reading an object keyed by parameter names. The body is the
+ * entity itself, or a bare array, read straight from the request into the
+ * full generic type of the parameter:
+ *
+ * <pre>
+ * &#064;Post &#064;Consumes("application/json") &#064;WithoutRoot
+ * public void save(List&lt;Order&gt; orders)
+ * </pre>
+ *
+ * With deserializeWithoutRoot() enabled in the GsonConfiguration, every
+ * single parameter method reads bodies this way, and
+ * &#064;WithoutRoot(false) restores the keyed body of a method.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface WithoutRoot {
+
+	boolean value() default true;
+}
@@ -0,0 +1,62 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+
+/**
+ * Lets another thread stop a serialization: once aborted, the next write
+ * fails with an InterruptedIOException.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class AbortableWriter extends FilterWriter {
+
+	private volatile boolean aborted;
+
+	AbortableWriter(Writer out) {
+		super(out);
+	}
+
+	void abort() {
+		aborted = true;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		checkAborted();
+		out.write(c);
+	}
+
+	@Override
+	public void write(char[] buffer, int offset, int length) throws IOException {
+		checkAborted();
+		out.write(buffer, offset, length);
+	}
+
+	@Override
+	public void write(String value, int offset, int length) throws IOException {
+		checkAborted();
+		out.write(value, offset, length);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		checkAborted();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		checkAborted();
+		out.close();
+	}
+
+	private void checkAborted() throws InterruptedIOException {
+		if (aborted) {
+			throw new InterruptedIOException("Serialization aborted");
+		}
+	}
+}
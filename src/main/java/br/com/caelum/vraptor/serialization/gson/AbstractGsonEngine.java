@@ -0,0 +1,155 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapterFactory;
+
+/**
+ * What the serialization and deserialization engines share: the cache of
+ * compiled Gson instances and the types their adapters adapt. A Gson is built
+ * once for each distinct configuration (the classes of the adapters, the
+ * {@link GsonAdapters} components and the options of the engine) and shared
+ * between requests, since Gson is thread-safe.
+ *
+ * A cached Gson keeps the adapter instances of the request that built it, so
+ * only a Gson whose adapters are all &#064;ApplicationScoped is cached. One
+ * with a request scoped adapter is built for its request alone.
+ *
+ * @param <A> JsonSerializer or JsonDeserializer
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public abstract class AbstractGsonEngine<A> {
+
+	private final Cache<Configuration, Gson> cache;
+
+	private final ConcurrentMap<Class<?>, Class<?>> adapterTypes = new ConcurrentHashMap<Class<?>, Class<?>>();
+
+	private final Class<?> adapterType;
+
+	protected final GsonConfiguration configuration;
+
+	protected final GsonAdapters adapters;
+
+	protected AbstractGsonEngine(GsonConfiguration configuration, GsonAdapters adapters, Class<?> adapterType,
+			int maximumCachedInstances) {
+		this.configuration = configuration;
+		this.adapters = adapters;
+		this.adapterType = adapterType;
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maximumCachedInstances)
+				.recordStats()
+				.build();
+	}
+
+	public GsonConfiguration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * The cached Gson for these adapters and options, built by create when
+	 * missing, counting the lookup as a hit or a miss. Adapters are registered
+	 * in a canonical order, so the order they are given in does not matter.
+	 */
+	protected Gson gsonFor(final CacheCounter counter, Collection<? extends A> requestAdapters, List<?> options,
+			final Callable<Gson> create) {
+		try {
+			if (!GsonAdapters.areApplicationScoped(requestAdapters)) {
+				counter.miss();
+				return create.call();
+			}
+
+			Configuration key = new Configuration(requestAdapters, adapters.getFactories(), options);
+			int misses = counter.getMisses();
+			Gson gson = cache.get(key, new Callable<Gson>() {
+				public Gson call() throws Exception {
+					counter.miss();
+					return create.call();
+				}
+			});
+			if (counter.getMisses() == misses) {
+				counter.hit();
+			}
+			return gson;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Unable to create Gson", e.getCause());
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create Gson", e);
+		}
+	}
+
+	/**
+	 * Hits of the cache. Gson instances built for a request alone are not
+	 * counted.
+	 */
+	public long getHitCount() {
+		return cache.stats().hitCount();
+	}
+
+	public long getMissCount() {
+		return cache.stats().missCount();
+	}
+
+	/**
+	 * The type the adapter adapts, resolved once per adapter class.
+	 */
+	protected Class<?> getAdapterType(A adapter) {
+		Class<?> adapterClass = adapter.getClass();
+		Class<?> type = adapterTypes.get(adapterClass);
+		if (type == null) {
+			type = GsonAdapters.adaptedType(adapterClass, adapterType);
+			adapterTypes.putIfAbsent(adapterClass, type);
+		}
+
+		return type;
+	}
+
+	/**
+	 * Everything that changes the Gson built, whatever the order of the
+	 * adapters.
+	 */
+	private static final class Configuration {
+
+		private final Set<Class<?>> adapters;
+
+		private final List<TypeAdapterFactory> factories;
+
+		private final List<?> options;
+
+		Configuration(Collection<?> adapters, List<TypeAdapterFactory> factories, List<?> options) {
+			this.adapters = new HashSet<Class<?>>();
+			for (Object adapter : adapters) {
+				this.adapters.add(adapter.getClass());
+			}
+			this.factories = factories;
+			this.options = options;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * adapters.hashCode() + factories.hashCode()) + options.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Configuration)) {
+				return false;
+			}
+			Configuration other = (Configuration) obj;
+			return adapters.equals(other.adapters) && factories.equals(other.factories)
+					&& options.equals(other.options);
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+
+/**
+ * Bounded pool that serializes responses out of the container threads, using
+ * Servlet 3.0 async requests. When the queue is full, the request thread
+ * serializes by itself, which slows down the clients that fill it. A failed
+ * serialization is answered with 500 and a request that times out before its
+ * body is written with 503, unless the response was already committed.
+ *
+ * Published over JMX as
+ * br.com.caelum.vraptor.gson:context="/app",type=AsyncSerializationExecutor.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class AsyncSerializationExecutor implements AsyncSerializationExecutorMBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncSerializationExecutor.class);
+
+	private final ThreadPoolExecutor pool;
+
+	private final long timeout;
+
+	private final AtomicLong completed = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong timeouts = new AtomicLong();
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	private ObjectName name;
+
+	public AsyncSerializationExecutor(GsonConfiguration configuration, ServletContext servletContext) {
+		int threads = configuration.asyncThreads();
+		this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(configuration.asyncQueueCapacity()), new SerializationThreads());
+		this.pool.allowCoreThreadTimeOut(true);
+		this.timeout = configuration.asyncTimeout();
+		register(servletContext.getContextPath());
+	}
+
+	/**
+	 * Releases the request thread and runs the serialization in the pool, or
+	 * runs it right away when the request can't be async or the pool is full.
+	 */
+	public void execute(HttpServletRequest request, Serialization serialization) {
+		if (!request.isAsyncSupported()) {
+			serialization.run();
+			return;
+		}
+
+		AsyncContext context = request.startAsync();
+		Task task = new Task(context, serialization);
+		context.setTimeout(timeout);
+		context.addListener(task);
+
+		try {
+			pool.execute(task);
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			task.run();
+		}
+	}
+
+	public int getQueueDepth() {
+		return pool.getQueue().size();
+	}
+
+	public int getActiveThreads() {
+		return pool.getActiveCount();
+	}
+
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		pool.shutdown();
+		if (name != null) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException e) {
+				logger.debug("Unable to unregister " + name, e);
+			}
+		}
+	}
+
+	private void register(String contextPath) {
+		String context = contextPath == null || contextPath.length() == 0 ? "/" : contextPath;
+		try {
+			ObjectName candidate = new ObjectName("br.com.caelum.vraptor.gson:context=" + ObjectName.quote(context)
+					+ ",type=AsyncSerializationExecutor");
+			if (server.isRegistered(candidate)) {
+				server.unregisterMBean(candidate);
+			}
+			server.registerMBean(this, candidate);
+			name = candidate;
+		} catch (JMException e) {
+			logger.warn("Unable to publish the async serialization executor", e);
+		}
+	}
+
+	/**
+	 * A serialization run by the executor.
+	 */
+	public interface Serialization extends Runnable {
+
+		/**
+		 * Called from another thread when the request times out while the
+		 * serialization writes, to make it stop at its next write.
+		 */
+		void abort();
+	}
+
+	/**
+	 * One async response. The serialization holds the lock for the whole
+	 * write, so a timeout never completes a response still being written: it
+	 * aborts the write and waits for it to stop before answering.
+	 */
+	private final class Task implements Runnable, AsyncListener {
+
+		private final Lock lock = new ReentrantLock();
+
+		private final AsyncContext context;
+
+		private final Serialization serialization;
+
+		private volatile boolean writing;
+
+		private volatile boolean timedOut;
+
+		/**
+		 * Whether the response was completed, guarded by the lock.
+		 */
+		private boolean done;
+
+		Task(AsyncContext context, Serialization serialization) {
+			this.context = context;
+			this.serialization = serialization;
+		}
+
+		public void run() {
+			lock.lock();
+			try {
+				// set before timedOut is read, so either this thread sees the
+				// timeout or the timeout sees the write and aborts it
+				writing = true;
+				if (timedOut || done) {
+					return;
+				}
+				try {
+					serialization.run();
+					completed.incrementAndGet();
+				} catch (RuntimeException e) {
+					if (timedOut) {
+						logger.debug("Async serialization aborted by a timeout", e);
+						return;
+					}
+					logger.error("Unable to serialize the async response", e);
+					sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				}
+				finish();
+			} finally {
+				writing = false;
+				lock.unlock();
+			}
+		}
+
+		public void onTimeout(AsyncEvent event) throws IOException {
+			timedOut = true;
+			if (writing) {
+				serialization.abort();
+			}
+
+			lock.lock();
+			try {
+				if (!done) {
+					timeouts.incrementAndGet();
+					sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+					finish();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		public void onComplete(AsyncEvent event) throws IOException {
+		}
+
+		public void onError(AsyncEvent event) throws IOException {
+		}
+
+		public void onStartAsync(AsyncEvent event) throws IOException {
+		}
+
+		private void sendError(int status) {
+			HttpServletResponse response = (HttpServletResponse) context.getResponse();
+			if (response.isCommitted()) {
+				return;
+			}
+			try {
+				response.sendError(status);
+			} catch (IOException e) {
+				logger.debug("Unable to send " + status, e);
+			}
+		}
+
+		private void finish() {
+			done = true;
+			context.complete();
+		}
+	}
+
+	private static final class SerializationThreads implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "vraptor-gson-async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+/**
+ * State of the pool that serializes async responses.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public interface AsyncSerializationExecutorMBean {
+
+	int getQueueDepth();
+
+	int getActiveThreads();
+
+	long getCompleted();
+
+	/**
+	 * Responses serialized by the request thread because the queue was full.
+	 */
+	long getRejected();
+
+	long getTimeouts();
+
+}
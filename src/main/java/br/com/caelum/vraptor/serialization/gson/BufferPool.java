@@ -0,0 +1,40 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reuses the byte buffers of response writers between requests. Buffers are
+ * borrowed by whatever thread writes, so async responses are safe too.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class BufferPool {
+
+	static final int BUFFER_SIZE = 8192;
+
+	private static final int MAXIMUM_IDLE = 256;
+
+	private final Queue<byte[]> idle = new ConcurrentLinkedQueue<byte[]>();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	byte[] borrow() {
+		byte[] buffer = idle.poll();
+		if (buffer == null) {
+			return new byte[BUFFER_SIZE];
+		}
+		size.decrementAndGet();
+		return buffer;
+	}
+
+	void release(byte[] buffer) {
+		if (size.incrementAndGet() <= MAXIMUM_IDLE) {
+			idle.offer(buffer);
+		} else {
+			size.decrementAndGet();
+		}
+	}
+}
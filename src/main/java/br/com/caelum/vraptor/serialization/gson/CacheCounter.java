@@ -0,0 +1,30 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+/**
+ * Counts the Gson cache lookups of a single request, for metrics.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public final class CacheCounter {
+
+	private int hits;
+
+	private int misses;
+
+	public void hit() {
+		hits++;
+	}
+
+	public void miss() {
+		misses++;
+	}
+
+	public int getHits() {
+		return hits;
+	}
+
+	public int getMisses() {
+		return misses;
+	}
+}
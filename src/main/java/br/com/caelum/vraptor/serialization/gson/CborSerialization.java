@@ -0,0 +1,133 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collection;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import br.com.caelum.vraptor.core.MethodInfo;
+import br.com.caelum.vraptor.interceptor.TypeNameExtractor;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.serialization.NoRootSerialization;
+import br.com.caelum.vraptor.serialization.ProxyInitializer;
+import br.com.caelum.vraptor.serialization.Serialization;
+import br.com.caelum.vraptor.serialization.Serializer;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+import br.com.caelum.vraptor.view.ResultException;
+
+import com.google.gson.JsonSerializer;
+
+/**
+ * Serializes as CBOR (application/cbor), a binary encoding of the JSON data
+ * model, with the same adapters, projections, compression, ETags and async
+ * mode of {@link GsonJSONSerialization}. It is chosen by
+ * result.use(representation()) when the Accept header asks for CBOR, or
+ * explicitly with result.use(CborSerialization.class).
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+public class CborSerialization implements Serialization {
+
+	public static final String CONTENT_TYPE = "application/cbor";
+
+	private final Binary serialization;
+
+	public CborSerialization(HttpServletResponse response,
+			HttpServletRequest request,
+			TypeNameExtractor extractor,
+			ProxyInitializer initializer,
+			Collection<JsonSerializer<?>> serializers,
+			GsonSerializationEngine engine,
+			MethodInfo methodInfo,
+			JsonMetrics metrics,
+			AsyncSerializationExecutor executor) {
+		this.serialization = new Binary(response, request, extractor, initializer, serializers, engine, methodInfo,
+				metrics, executor);
+	}
+
+	public boolean accepts(String format) {
+		return "cbor".equals(format);
+	}
+
+	public <T> Serializer from(T object) {
+		return serialization.from(object);
+	}
+
+	public <T> Serializer from(T object, String alias) {
+		return serialization.from(object, alias);
+	}
+
+	public NoRootSerialization withoutRoot() {
+		serialization.withoutRoot();
+		return this;
+	}
+
+	/**
+	 * @see GsonJSONSerialization#withETag()
+	 */
+	public CborSerialization withETag() {
+		serialization.withETag();
+		return this;
+	}
+
+	/**
+	 * @see GsonJSONSerialization#withETag(Object)
+	 */
+	public CborSerialization withETag(Object version) {
+		serialization.withETag(version);
+		return this;
+	}
+
+	/**
+	 * @see GsonJSONSerialization#async()
+	 */
+	public CborSerialization async() {
+		serialization.async();
+		return this;
+	}
+
+	public CborSerialization with(SerializationOptions options) {
+		serialization.with(options);
+		return this;
+	}
+
+	/**
+	 * The JSON serialization writing bytes instead of text. It is not a
+	 * component, so JSONSerialization keeps a single implementation.
+	 */
+	private static class Binary extends GsonJSONSerialization {
+
+		Binary(HttpServletResponse response, HttpServletRequest request, TypeNameExtractor extractor,
+				ProxyInitializer initializer, Collection<JsonSerializer<?>> serializers,
+				GsonSerializationEngine engine, MethodInfo methodInfo, JsonMetrics metrics,
+				AsyncSerializationExecutor executor) {
+			super(response, request, extractor, initializer, serializers, engine, methodInfo, metrics, executor);
+		}
+
+		@Override
+		protected void setContentType() {
+			response.setContentType(CONTENT_TYPE);
+		}
+
+		@Override
+		protected GsonSerializer newSerializer(SerializationOptions options, Writer writer) {
+			return new CborSerializer(builder, options, writer, extractor, initializer, metrics,
+					methodInfo.getResourceMethod());
+		}
+
+		@Override
+		protected Writer newWriter(OutputStream out) {
+			return new OctetWriter(out, engine.buffers());
+		}
+
+		@Override
+		protected Writer writerInUse(IllegalStateException e) throws IOException {
+			throw new ResultException("CBOR is binary and the response writer was already used", e);
+		}
+	}
+}
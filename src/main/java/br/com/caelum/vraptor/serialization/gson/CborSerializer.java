@@ -0,0 +1,31 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.Writer;
+
+import br.com.caelum.vraptor.interceptor.TypeNameExtractor;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+import br.com.caelum.vraptor.serialization.ProxyInitializer;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A GsonSerializer writing CBOR instead of JSON text, with the same
+ * include, exclude and recursive projections and the same adapters.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+
+public class CborSerializer extends GsonSerializer {
+
+	public CborSerializer(VraptorGsonBuilder builder, SerializationOptions options, Writer writer,
+			TypeNameExtractor extractor, ProxyInitializer initializer, JsonMetrics metrics, ResourceMethod method) {
+		super(builder, options, writer, extractor, initializer, metrics, method);
+	}
+
+	@Override
+	protected JsonWriter newJsonWriter(Writer out) {
+		return new CborWriter(out);
+	}
+}
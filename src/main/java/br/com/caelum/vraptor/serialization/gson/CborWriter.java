@@ -0,0 +1,266 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the JsonWriter events as CBOR (RFC 7049) instead of text, so every
+ * TypeAdapter, exclusion strategy and root handling of Gson works unchanged.
+ * Arrays and objects use indefinite lengths, so nothing is buffered. The
+ * bytes go to an {@link OctetWriter}, one char per byte.
+ *
+ * Every method of JsonWriter that writes or flushes is overridden, so the
+ * text encoder of JsonWriter never runs. The final setters it keeps, such as
+ * setIndent and setHtmlSafe, change nothing in CBOR; only setSerializeNulls
+ * is honored.
+ *
+ * Numbers that do not fit a long or a double without loss, such as big
+ * BigDecimals, are written as text strings, which Gson reads back as numbers.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class CborWriter extends JsonWriter {
+
+	private static final int UNSIGNED = 0;
+
+	private static final int NEGATIVE = 1 << 5;
+
+	private static final int TEXT = 3 << 5;
+
+	private static final int BREAK = 0xff;
+
+	private final Writer out;
+
+	private String deferredName;
+
+	CborWriter(Writer out) {
+		super(out);
+		this.out = out;
+	}
+
+	@Override
+	public JsonWriter beginArray() throws IOException {
+		writeDeferredName();
+		out.write(0x9f);
+		return this;
+	}
+
+	@Override
+	public JsonWriter endArray() throws IOException {
+		out.write(BREAK);
+		return this;
+	}
+
+	@Override
+	public JsonWriter beginObject() throws IOException {
+		writeDeferredName();
+		out.write(0xbf);
+		return this;
+	}
+
+	@Override
+	public JsonWriter endObject() throws IOException {
+		out.write(BREAK);
+		return this;
+	}
+
+	@Override
+	public JsonWriter name(String name) throws IOException {
+		if (name == null) {
+			throw new NullPointerException("name == null");
+		}
+		if (deferredName != null) {
+			throw new IllegalStateException("Name " + deferredName + " has no value");
+		}
+		deferredName = name;
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		writeDeferredName();
+		text(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter nullValue() throws IOException {
+		if (deferredName != null) {
+			if (!getSerializeNulls()) {
+				deferredName = null;
+				return this;
+			}
+			writeDeferredName();
+		}
+		out.write(0xf6);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) throws IOException {
+		writeDeferredName();
+		out.write(value ? 0xf5 : 0xf4);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(double value) throws IOException {
+		writeDeferredName();
+		float single = (float) value;
+		if (single == value || Double.isNaN(value)) {
+			out.write(0xfa);
+			bytes(Float.floatToIntBits(single), 4);
+		} else {
+			out.write(0xfb);
+			bytes(Double.doubleToLongBits(value), 8);
+		}
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) throws IOException {
+		writeDeferredName();
+		if (value >= 0) {
+			header(UNSIGNED, value);
+		} else {
+			header(NEGATIVE, -1 - value);
+		}
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Number value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return value(value.longValue());
+		}
+		if (value instanceof Double || value instanceof Float) {
+			return value(value.doubleValue());
+		}
+
+		String number = value.toString();
+		try {
+			return value(Long.parseLong(number));
+		} catch (NumberFormatException e) {
+			// not an integer that fits a long
+		}
+		if (value instanceof BigDecimal || value instanceof BigInteger) {
+			return value(number);
+		}
+		return value(Double.parseDouble(number));
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void writeDeferredName() throws IOException {
+		if (deferredName != null) {
+			text(deferredName);
+			deferredName = null;
+		}
+	}
+
+	/**
+	 * A text string, UTF-8 encoded after its length in bytes. Lone surrogates
+	 * are written as '?'.
+	 */
+	private void text(String value) throws IOException {
+		int length = value.length();
+		long bytes = 0;
+		boolean ascii = true;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				bytes++;
+				continue;
+			}
+			ascii = false;
+			if (c < 0x800) {
+				bytes += 2;
+			} else if (isPair(value, i)) {
+				bytes += 4;
+				i++;
+			} else {
+				bytes += isSurrogate(c) ? 1 : 3;
+			}
+		}
+
+		header(TEXT, bytes);
+		if (ascii) {
+			out.write(value, 0, length);
+			return;
+		}
+
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				out.write(c);
+			} else if (c < 0x800) {
+				out.write(0xc0 | (c >> 6));
+				out.write(0x80 | (c & 0x3f));
+			} else if (isPair(value, i)) {
+				int code = Character.toCodePoint(c, value.charAt(++i));
+				out.write(0xf0 | (code >> 18));
+				out.write(0x80 | ((code >> 12) & 0x3f));
+				out.write(0x80 | ((code >> 6) & 0x3f));
+				out.write(0x80 | (code & 0x3f));
+			} else if (isSurrogate(c)) {
+				out.write('?');
+			} else {
+				out.write(0xe0 | (c >> 12));
+				out.write(0x80 | ((c >> 6) & 0x3f));
+				out.write(0x80 | (c & 0x3f));
+			}
+		}
+	}
+
+	private static boolean isPair(String value, int index) {
+		return Character.isHighSurrogate(value.charAt(index)) && index + 1 < value.length()
+				&& Character.isLowSurrogate(value.charAt(index + 1));
+	}
+
+	private static boolean isSurrogate(char c) {
+		return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+	}
+
+	private void header(int major, long value) throws IOException {
+		if (value < 24) {
+			out.write(major | (int) value);
+		} else if (value < 0x100) {
+			out.write(major | 24);
+			out.write((int) value);
+		} else if (value < 0x10000) {
+			out.write(major | 25);
+			bytes(value, 2);
+		} else if (value < 0x100000000L) {
+			out.write(major | 26);
+			bytes(value, 4);
+		} else {
+			out.write(major | 27);
+			bytes(value, 8);
+		}
+	}
+
+	private void bytes(long value, int count) throws IOException {
+		for (int shift = (count - 1) * 8; shift >= 0; shift -= 8) {
+			out.write((int) (value >>> shift) & 0xff);
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+/**
+ * Checks for optional dependencies, such as Hibernate.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class Classpath {
+
+	static final boolean HIBERNATE = isPresent("org.hibernate.proxy.HibernateProxy");
+
+	private Classpath() {
+	}
+
+	static boolean isPresent(String className) {
+		try {
+			Class.forName(className, false, Classpath.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
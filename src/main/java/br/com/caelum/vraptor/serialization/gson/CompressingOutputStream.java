@@ -0,0 +1,234 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Compresses the body straight into the response while it is written. The
+ * first bytes are held until they reach the threshold: smaller bodies are sent
+ * as they are, larger ones get the Content-Encoding header and are deflated
+ * from then on, without buffering the rest.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class CompressingOutputStream extends OutputStream implements Releasable {
+
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private final HttpServletResponse response;
+
+	private final OutputStream raw;
+
+	private final Compression compression;
+
+	private final DeflaterPool pool;
+
+	private final byte[] pending;
+
+	private int pendingLength;
+
+	private OutputStream out;
+
+	private Deflater deflater;
+
+	private byte[] buffer;
+
+	private CRC32 crc;
+
+	private final byte[] single = new byte[1];
+
+	private boolean closed;
+
+	/**
+	 * @param raw the OutputStream of the response, written only once the
+	 *            Content-Encoding is decided
+	 */
+	CompressingOutputStream(HttpServletResponse response, OutputStream raw, Compression compression,
+			DeflaterPool pool, int threshold) {
+		this.response = response;
+		this.raw = raw;
+		this.compression = compression;
+		this.pool = pool;
+		this.pending = new byte[threshold];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		single[0] = (byte) b;
+		write(single, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (out == null) {
+			if (pendingLength + length <= pending.length) {
+				System.arraycopy(bytes, offset, pending, pendingLength, length);
+				pendingLength += length;
+				return;
+			}
+			start();
+		}
+		deflate(bytes, offset, length);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		if (out == null) {
+			raw.write(pending, 0, pendingLength);
+			raw.close();
+			return;
+		}
+
+		try {
+			deflater.finish();
+			while (!deflater.finished()) {
+				drain();
+			}
+			if (compression == Compression.GZIP) {
+				writeInt((int) crc.getValue());
+				writeInt((int) deflater.getBytesRead());
+			}
+			out.close();
+		} finally {
+			pool.release(deflater);
+		}
+	}
+
+	public void release() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		pendingLength = 0;
+		if (deflater != null) {
+			pool.release(deflater);
+		}
+	}
+
+	private void start() throws IOException {
+		response.setHeader("Content-Encoding", compression.getName());
+		out = raw;
+		deflater = pool.borrow();
+		buffer = new byte[8192];
+		if (compression == Compression.GZIP) {
+			crc = new CRC32();
+			out.write(GZIP_HEADER);
+		}
+		deflate(pending, 0, pendingLength);
+	}
+
+	private void deflate(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return;
+		}
+		if (crc != null) {
+			crc.update(bytes, offset, length);
+		}
+		deflater.setInput(bytes, offset, length);
+		while (!deflater.needsInput()) {
+			drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		int deflated = deflater.deflate(buffer, 0, buffer.length);
+		if (deflated > 0) {
+			out.write(buffer, 0, deflated);
+		}
+	}
+
+	private void writeInt(int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+		out.write((value >> 16) & 0xff);
+		out.write((value >> 24) & 0xff);
+	}
+
+	/**
+	 * Content codings this stream can produce.
+	 */
+	enum Compression {
+		GZIP("gzip"), DEFLATE("deflate");
+
+		private final String name;
+
+		private Compression(String name) {
+			this.name = name;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		/**
+		 * The preferred coding accepted by the Accept-Encoding header, or null.
+		 */
+		static Compression accepted(String header) {
+			if (header == null) {
+				return null;
+			}
+
+			Boolean gzip = null;
+			Boolean deflate = null;
+			boolean any = false;
+			for (String coding : header.split(",")) {
+				String[] parts = coding.trim().split(";");
+				String name = parts[0].trim().toLowerCase();
+				boolean acceptable = !isRefused(parts);
+				if (name.equals("gzip") || name.equals("x-gzip")) {
+					gzip = acceptable || Boolean.TRUE.equals(gzip);
+				} else if (name.equals("deflate")) {
+					deflate = acceptable || Boolean.TRUE.equals(deflate);
+				} else if (name.equals("*")) {
+					any = acceptable;
+				}
+			}
+
+			if (Boolean.TRUE.equals(gzip)) {
+				return GZIP;
+			}
+			if (Boolean.TRUE.equals(deflate)) {
+				return DEFLATE;
+			}
+			// * only stands for the codings the header does not name
+			if (any && gzip == null) {
+				return GZIP;
+			}
+			if (any && deflate == null) {
+				return DEFLATE;
+			}
+			return null;
+		}
+
+		private static boolean isRefused(String[] parts) {
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						return Double.parseDouble(parameter.substring(2)) <= 0;
+					} catch (NumberFormatException e) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Strong ETag and If-None-Match handling of a GET or HEAD request.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class ConditionalGet {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final HttpServletRequest request;
+
+	private final HttpServletResponse response;
+
+	private final String coding;
+
+	private final Object version;
+
+	/**
+	 * @param coding the content coding negotiated for the response, if any,
+	 *            since each coding is a different representation
+	 * @param version a key that changes whenever the serialized data changes,
+	 *            or null to hash the output
+	 */
+	ConditionalGet(HttpServletRequest request, HttpServletResponse response, String coding, Object version) {
+		this.request = request;
+		this.response = response;
+		this.coding = coding;
+		this.version = version;
+	}
+
+	boolean isApplicable() {
+		String method = request.getMethod();
+		return "GET".equals(method) || "HEAD".equals(method);
+	}
+
+	Object getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the ETag and, when the client already has it, answers 304.
+	 *
+	 * @return whether the body must be sent
+	 */
+	boolean send(byte[] digest) {
+		String tag = tagFor(digest);
+		response.setHeader("ETag", tag);
+		if (matches(request.getHeader("If-None-Match"), tag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return false;
+		}
+		return true;
+	}
+
+	private String tagFor(byte[] digest) {
+		StringBuilder tag = new StringBuilder(2 * digest.length + 12).append('"');
+		for (byte b : digest) {
+			tag.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+		}
+		if (coding != null) {
+			tag.append('-').append(coding);
+		}
+		return tag.append('"').toString();
+	}
+
+	/**
+	 * If-None-Match uses the weak comparison: W/ prefixes are ignored.
+	 */
+	static boolean matches(String header, String tag) {
+		if (header == null) {
+			return false;
+		}
+		for (String candidate : header.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,73 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.util.zip.Deflater;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+
+/**
+ * Default settings of the Gson serialization.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class DefaultGsonConfiguration implements GsonConfiguration {
+
+	public TemporalFormat temporalFormat() {
+		return TemporalFormat.OBJECT;
+	}
+
+	/**
+	 * Off, since applications usually compress in a servlet filter already.
+	 */
+	public int compressionThreshold() {
+		return -1;
+	}
+
+	public int compressionLevel() {
+		return Deflater.DEFAULT_COMPRESSION;
+	}
+
+	public int asyncThreads() {
+		return 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	public int asyncQueueCapacity() {
+		return 256;
+	}
+
+	public long asyncTimeout() {
+		return 30000;
+	}
+
+	public boolean deserializeWithoutRoot() {
+		return false;
+	}
+
+	public long maxBodyBytes() {
+		return 16 * 1024 * 1024;
+	}
+
+	public int maxBodyDepth() {
+		return 256;
+	}
+
+	public int maxArrayLength() {
+		return 1000000;
+	}
+
+	public int maxStringLength() {
+		return 1024 * 1024;
+	}
+
+	public long streamFlushInterval() {
+		return 200;
+	}
+
+	public boolean warmUpOnStartup() {
+		return false;
+	}
+
+}
@@ -0,0 +1,68 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Reuses Deflaters between responses, since each one holds native memory that
+ * is expensive to allocate and is only released by end() or finalization.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class DeflaterPool {
+
+	private static final int MAXIMUM_IDLE = 64;
+
+	private final int level;
+
+	private final boolean nowrap;
+
+	private final Queue<Deflater> idle = new ConcurrentLinkedQueue<Deflater>();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * @param nowrap true for raw deflate, as used inside gzip, false for zlib
+	 */
+	DeflaterPool(int level, boolean nowrap) {
+		this.level = level;
+		this.nowrap = nowrap;
+	}
+
+	Deflater borrow() {
+		Deflater deflater = idle.poll();
+		if (deflater == null) {
+			return new Deflater(level, nowrap);
+		}
+		size.decrementAndGet();
+		return deflater;
+	}
+
+	void release(Deflater deflater) {
+		deflater.reset();
+		if (size.incrementAndGet() <= MAXIMUM_IDLE) {
+			idle.offer(deflater);
+		} else {
+			size.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Deflaters waiting to be borrowed.
+	 */
+	int idle() {
+		return size.get();
+	}
+
+	void close() {
+		Deflater deflater;
+		while ((deflater = idle.poll()) != null) {
+			size.decrementAndGet();
+			deflater.end();
+		}
+	}
+}
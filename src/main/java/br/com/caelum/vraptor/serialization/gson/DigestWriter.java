@@ -0,0 +1,66 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Discards what is written, keeping only its MD5 digest.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class DigestWriter extends Writer {
+
+	private final MessageDigest digest;
+
+	private final byte[] buffer = new byte[1024];
+
+	private final char[] chars = new char[buffer.length / 2];
+
+	DigestWriter() {
+		try {
+			this.digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is always available", e);
+		}
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) {
+		int end = offset + length;
+		while (offset < end) {
+			int count = Math.min(end - offset, buffer.length / 2);
+			for (int i = 0; i < count; i++) {
+				char c = chars[offset + i];
+				buffer[2 * i] = (byte) (c >> 8);
+				buffer[2 * i + 1] = (byte) c;
+			}
+			digest.update(buffer, 0, 2 * count);
+			offset += count;
+		}
+	}
+
+	@Override
+	public void write(String value, int offset, int length) {
+		int end = offset + length;
+		while (offset < end) {
+			int count = Math.min(end - offset, chars.length);
+			value.getChars(offset, offset + count, chars, 0);
+			write(chars, 0, count);
+			offset += count;
+		}
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+	byte[] digest() {
+		return digest.digest();
+	}
+}
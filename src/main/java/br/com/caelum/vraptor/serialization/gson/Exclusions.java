@@ -4,56 +4,82 @@ import static br.com.caelum.vraptor.serialization.gson.GsonSerializer.isPrimitiv
 
 import java.util.Map.Entry;
 
-import net.vidageek.mirror.dsl.Mirror;
 import br.com.caelum.vraptor.serialization.xstream.Serializee;
 
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Multimap;
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
 
 /**
- * 
+ * Exclusion strategy for the projection of a {@link Serializee}. Include and
+ * exclude paths are compiled on creation into tables of (declaring class,
+ * field name), so each decision is a lookup. Two instances are equal when
+ * they project the same fields, so a compiled Gson (and this instance) is
+ * shared by every request using the same projection.
+ *
  * @author Renan Reis
  * @author Guilherme Mangabeira
  */
 
 public class Exclusions implements ExclusionStrategy {
 
-	private Serializee serializee;
+	private final ImmutableSetMultimap<Class<?>, String> includedFields;
+
+	private final ImmutableSetMultimap<Class<?>, String> excludedFields;
+
+	private final boolean recursive;
 
 	public Exclusions(Serializee serializee) {
-		this.serializee = serializee;
+		this.includedFields = compile(serializee.getIncludes());
+		this.excludedFields = compile(serializee.getExcludes());
+		this.recursive = serializee.isRecursive();
+	}
+
+	/**
+	 * A path matches a field when it resolves to the field's declaring class
+	 * and its last segment is the field name.
+	 */
+	private static ImmutableSetMultimap<Class<?>, String> compile(Multimap<String, Class<?>> paths) {
+		ImmutableSetMultimap.Builder<Class<?>, String> fields = ImmutableSetMultimap.builder();
+		for (Entry<String, Class<?>> path : paths.entries()) {
+			String name = path.getKey();
+			fields.put(path.getValue(), name.substring(name.lastIndexOf('.') + 1));
+		}
+		return fields.build();
 	}
 
 	public boolean shouldSkipField(FieldAttributes f) {
 		String fieldName = f.getName();
 		Class<?> definedIn = f.getDeclaringClass();
 
-		for (Entry<String, Class<?>> include : serializee.getIncludes().entries()) {
-			if (isCompatiblePath(include, definedIn, fieldName)) {
-				return false;
-			}
+		if (includedFields.containsEntry(definedIn, fieldName)) {
+			return false;
 		}
-		for (Entry<String, Class<?>> exclude : serializee.getExcludes().entries()) {
-			if (isCompatiblePath(exclude, definedIn, fieldName)) {
-				return true;
-			}
+		if (excludedFields.containsEntry(definedIn, fieldName)) {
+			return true;
 		}
 
-		boolean skip = false;
-
-		if (!serializee.isRecursive())
-			skip = !isPrimitive(new Mirror().on(definedIn).reflect().field(fieldName).getType());
+		return !recursive && !isPrimitive(f.getDeclaredClass());
+	}
 
-		return skip;
+	public boolean shouldSkipClass(Class<?> clazz) {
+		return false;
 	}
 
-	private boolean isCompatiblePath(Entry<String, Class<?>> path, Class<?> definedIn, String fieldName) {
-		return (path.getValue().equals(definedIn) && (path.getKey().equals(fieldName) || path.getKey().endsWith(
-				"." + fieldName)));
+	@Override
+	public int hashCode() {
+		return 31 * (31 * includedFields.hashCode() + excludedFields.hashCode()) + (recursive ? 1 : 0);
 	}
 
-	public boolean shouldSkipClass(Class<?> clazz) {
-		return false;
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Exclusions)) {
+			return false;
+		}
+		Exclusions other = (Exclusions) obj;
+		return recursive == other.recursive && includedFields.equals(other.includedFields)
+				&& excludedFields.equals(other.excludedFields);
 	}
 
 }
@@ -0,0 +1,21 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class to have a streaming TypeAdapter generated at compile time by
+ * the vraptor-gson-processor annotation processor. The generated adapter is
+ * registered automatically and used instead of Gson's reflective one.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface GenerateAdapter {
+}
@@ -0,0 +1,108 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Finds the adapters generated for {@link GenerateAdapter} classes. A
+ * generated adapter is named after the binary name of its class plus
+ * {@value #SUFFIX}. Classes handled by a registered adapter keep using it.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public class GeneratedAdapters implements TypeAdapterFactory {
+
+	public static final String SUFFIX = "_GsonAdapter";
+
+	private static final Object NOT_GENERATED = new Object();
+
+	private static final ConcurrentMap<Class<?>, Object> constructors = new ConcurrentHashMap<Class<?>, Object>();
+
+	private final Collection<Class<?>> adaptedTypes;
+
+	private final ExclusionStrategy[] strategies;
+
+	public GeneratedAdapters(Collection<Class<?>> adaptedTypes, ExclusionStrategy... strategies) {
+		this.adaptedTypes = adaptedTypes;
+		this.strategies = strategies;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		Class<? super T> raw = type.getRawType();
+		if (!raw.isAnnotationPresent(GenerateAdapter.class) || isAdapted(raw)) {
+			return null;
+		}
+
+		Constructor<?> constructor = constructorFor(raw);
+		if (constructor == null) {
+			return null;
+		}
+
+		try {
+			return (TypeAdapter<T>) constructor.newInstance(gson, this);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create generated adapter for " + raw, e);
+		}
+	}
+
+	/**
+	 * Whether Gson's reflective adapter would skip the field: static,
+	 * transient and synthetic fields, fields of anonymous or local classes, and
+	 * those the exclusion strategies skip. The strategies are registered for
+	 * both directions, so serialize changes nothing for now.
+	 */
+	boolean excludes(Field field, boolean serialize) {
+		if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0 || field.isSynthetic()
+				|| isAnonymousOrLocal(field.getType())) {
+			return true;
+		}
+		FieldAttributes attributes = new FieldAttributes(field);
+		for (ExclusionStrategy strategy : strategies) {
+			if (strategy.shouldSkipClass(field.getType()) || strategy.shouldSkipField(attributes)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isAnonymousOrLocal(Class<?> type) {
+		return !Enum.class.isAssignableFrom(type) && (type.isAnonymousClass() || type.isLocalClass());
+	}
+
+	private boolean isAdapted(Class<?> type) {
+		for (Class<?> adapted : adaptedTypes) {
+			if (adapted.isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Constructor<?> constructorFor(Class<?> type) {
+		Object constructor = constructors.get(type);
+		if (constructor == null) {
+			try {
+				Class<?> adapter = Class.forName(type.getName() + SUFFIX, true, type.getClassLoader());
+				constructor = adapter.getConstructor(Gson.class, GeneratedAdapters.class);
+			} catch (Exception e) {
+				constructor = NOT_GENERATED;
+			}
+			constructors.putIfAbsent(type, constructor);
+		}
+
+		return constructor == NOT_GENERATED ? null : (Constructor<?>) constructor;
+	}
+}
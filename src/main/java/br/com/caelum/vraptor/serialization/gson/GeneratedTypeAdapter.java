@@ -0,0 +1,99 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+
+import br.com.caelum.vraptor.serialization.gson.GsonInternals.Factory;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Base class of the adapters generated for {@link GenerateAdapter} classes.
+ * Generated code reads and writes fields directly; this class decides once,
+ * when the adapter is created for a Gson, which fields are excluded and which
+ * adapter handles each field.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public abstract class GeneratedTypeAdapter<T> extends TypeAdapter<T> {
+
+	private final Gson gson;
+
+	private final Type[] types;
+
+	private final boolean[] serialized;
+
+	private final boolean[] deserialized;
+
+	private final TypeAdapter<?>[] adapters;
+
+	private final Factory<T> factory;
+
+	protected GeneratedTypeAdapter(Gson gson, GeneratedAdapters factory, Class<T> type, Field... fields) {
+		this.gson = gson;
+		this.types = new Type[fields.length];
+		this.serialized = new boolean[fields.length];
+		this.deserialized = new boolean[fields.length];
+		this.adapters = new TypeAdapter<?>[fields.length];
+		this.factory = GsonInternals.factoryFor(type);
+
+		for (int i = 0; i < fields.length; i++) {
+			types[i] = fields[i].getGenericType();
+			serialized[i] = !factory.excludes(fields[i], true);
+			deserialized[i] = !factory.excludes(fields[i], false);
+			if (serialized[i] || deserialized[i]) {
+				adapters[i] = gson.getAdapter(TypeToken.get(types[i]));
+			}
+		}
+	}
+
+	protected boolean isSerialized(int field) {
+		return serialized[field];
+	}
+
+	protected boolean isDeserialized(int field) {
+		return deserialized[field];
+	}
+
+	/**
+	 * Writes a field value, preferring the adapter of its runtime type the same
+	 * way Gson's reflective adapter does.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void write(JsonWriter out, int field, Object value) throws IOException {
+		TypeAdapter<Object> chosen = (TypeAdapter<Object>) adapters[field];
+		Type type = types[field];
+		if (value != null && type instanceof Class<?> && value.getClass() != type) {
+			TypeAdapter<Object> runtime = (TypeAdapter<Object>) gson.getAdapter(value.getClass());
+			if (!GsonInternals.isReflective(runtime) || GsonInternals.isReflective(chosen)) {
+				chosen = runtime;
+			}
+		}
+		chosen.write(out, value);
+	}
+
+	protected Object read(JsonReader in, int field) throws IOException {
+		return adapters[field].read(in);
+	}
+
+	/**
+	 * Creates instances of classes without an accessible no-args constructor.
+	 */
+	protected T newInstance() {
+		return factory.newInstance();
+	}
+
+	protected static Field field(Class<?> declaringClass, String name) {
+		try {
+			return declaringClass.getDeclaredField(name);
+		} catch (NoSuchFieldException e) {
+			throw new IllegalStateException("Generated adapter is out of date with " + declaringClass, e);
+		}
+	}
+}
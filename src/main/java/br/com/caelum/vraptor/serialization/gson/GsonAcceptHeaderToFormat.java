@@ -0,0 +1,23 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.view.DefaultAcceptHeaderToFormat;
+
+/**
+ * Adds the media types of this plugin to the formats known by VRaptor, so
+ * result.use(representation()) picks the matching serialization from the
+ * Accept header.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class GsonAcceptHeaderToFormat extends DefaultAcceptHeaderToFormat {
+
+	public GsonAcceptHeaderToFormat() {
+		mimeToFormat.put(CborSerialization.CONTENT_TYPE, "cbor");
+		mimeToFormat.put(NdjsonSerialization.CONTENT_TYPE, "ndjson");
+	}
+}
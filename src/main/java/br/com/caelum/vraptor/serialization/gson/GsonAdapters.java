@@ -0,0 +1,192 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.ioc.Container;
+import br.com.caelum.vraptor.ioc.StereotypeHandler;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+
+/**
+ * The TypeAdapter and TypeAdapterFactory components of the application,
+ * registered in every Gson used to serialize and deserialize. They read and
+ * write the stream directly, without building a JsonElement tree as
+ * JsonSerializer and JsonDeserializer do. A TypeAdapter adapts the type it
+ * declares and its subtypes.
+ *
+ * The components are found when VRaptor starts, and the type of each
+ * TypeAdapter is resolved then. The instances are asked to the container when
+ * the first Gson is built and shared by the whole application, so adapters
+ * must be &#064;ApplicationScoped, which is checked when they are found, and
+ * must not keep per-request state. Components that are also a JsonSerializer
+ * or a JsonDeserializer are registered as such instead, and only their
+ * classes are kept here. Those that are not &#064;ApplicationScoped are
+ * logged, since no Gson using them can be shared.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class GsonAdapters implements StereotypeHandler {
+
+	private static final Logger logger = LoggerFactory.getLogger(GsonAdapters.class);
+
+	private final Container container;
+
+	private final List<Class<?>> components = new CopyOnWriteArrayList<Class<?>>();
+
+	private final Map<Class<?>, Class<?>> adaptedTypes = new ConcurrentHashMap<Class<?>, Class<?>>();
+
+	private final List<Class<?>> serializers = new CopyOnWriteArrayList<Class<?>>();
+
+	private final List<Class<?>> deserializers = new CopyOnWriteArrayList<Class<?>>();
+
+	private volatile List<TypeAdapterFactory> factories;
+
+	public GsonAdapters(Container container) {
+		this.container = container;
+	}
+
+	public Class<? extends Annotation> stereotype() {
+		return Component.class;
+	}
+
+	public void handle(Class<?> type) {
+		boolean serializer = JsonSerializer.class.isAssignableFrom(type);
+		boolean deserializer = JsonDeserializer.class.isAssignableFrom(type);
+		if (serializer) {
+			serializers.add(type);
+		}
+		if (deserializer) {
+			deserializers.add(type);
+		}
+		if (serializer || deserializer) {
+			if (!type.isAnnotationPresent(ApplicationScoped.class)) {
+				logger.warn("{} is not @ApplicationScoped, so the Gson instances using it are built for each request",
+						type.getName());
+			}
+			return;
+		}
+		boolean adapter = TypeAdapter.class.isAssignableFrom(type);
+		if ((adapter || TypeAdapterFactory.class.isAssignableFrom(type))
+				&& !type.isAnnotationPresent(ApplicationScoped.class)) {
+			throw new IllegalStateException(type.getName()
+					+ " must be @ApplicationScoped, since its instance is shared by every request");
+		}
+		if (adapter) {
+			adaptedTypes.put(type, adaptedType(type, TypeAdapter.class));
+			components.add(type);
+			factories = null;
+		} else if (TypeAdapterFactory.class.isAssignableFrom(type)) {
+			components.add(type);
+			factories = null;
+		}
+	}
+
+	/**
+	 * Types adapted by the TypeAdapter components. What a TypeAdapterFactory
+	 * handles is only known when it is asked.
+	 */
+	public Collection<Class<?>> getAdaptedTypes() {
+		return Collections.unmodifiableCollection(adaptedTypes.values());
+	}
+
+	/**
+	 * Classes of the JsonSerializer components, whose instances are injected
+	 * in each serialization.
+	 */
+	public List<Class<?>> getSerializerClasses() {
+		return Collections.unmodifiableList(serializers);
+	}
+
+	/**
+	 * Classes of the JsonDeserializer components.
+	 */
+	public List<Class<?>> getDeserializerClasses() {
+		return Collections.unmodifiableList(deserializers);
+	}
+
+	/**
+	 * Every component as a factory, in the order they were found.
+	 */
+	public List<TypeAdapterFactory> getFactories() {
+		List<TypeAdapterFactory> factories = this.factories;
+		if (factories == null) {
+			factories = new ArrayList<TypeAdapterFactory>(components.size());
+			for (Class<?> component : components) {
+				Object adapter = container.instanceFor(component);
+				if (adapter instanceof TypeAdapter) {
+					factories.add(new TypeHierarchyAdapterFactory(adaptedTypes.get(component), (TypeAdapter<?>) adapter));
+				} else {
+					factories.add((TypeAdapterFactory) adapter);
+				}
+			}
+			this.factories = factories = Collections.unmodifiableList(factories);
+		}
+		return factories;
+	}
+
+	/**
+	 * The adapters sorted by class name, so a Gson registers them in the same
+	 * order whatever the order the container injected them in.
+	 */
+	public static <T> List<T> inCanonicalOrder(Collection<T> adapters) {
+		List<T> sorted = new ArrayList<T>(adapters);
+		Collections.sort(sorted, new Comparator<T>() {
+			public int compare(T one, T other) {
+				return one.getClass().getName().compareTo(other.getClass().getName());
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * Whether every adapter is &#064;ApplicationScoped, and so may be kept by
+	 * a Gson shared by the whole application.
+	 */
+	public static boolean areApplicationScoped(Collection<?> adapters) {
+		for (Object adapter : adapters) {
+			if (!adapter.getClass().isAnnotationPresent(ApplicationScoped.class)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The type argument an adapter class gives to adapterType, such as
+	 * Calendar for a JsonSerializer&lt;Calendar&gt;, wherever in its
+	 * hierarchy it is declared.
+	 *
+	 * @throws IllegalArgumentException if the adapter is a raw adapterType
+	 */
+	public static Class<?> adaptedType(Class<?> adapterClass, Class<?> adapterType) {
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		Type supertype = TypeToken.of(adapterClass).getSupertype((Class) adapterType).getType();
+		if (!(supertype instanceof ParameterizedType)) {
+			throw new IllegalArgumentException(adapterClass.getName() + " must declare the type it adapts, as in "
+					+ adapterType.getSimpleName() + "<Type>");
+		}
+		return TypeToken.of(((ParameterizedType) supertype).getActualTypeArguments()[0]).getRawType();
+	}
+}
@@ -0,0 +1,89 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+/**
+ * Application wide settings of the Gson serialization. To change them, extend
+ * DefaultGsonConfiguration and annotate it with @Component.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public interface GsonConfiguration {
+
+	/**
+	 * How Calendar and Date values are written.
+	 */
+	TemporalFormat temporalFormat();
+
+	/**
+	 * Responses smaller than this number of bytes are sent uncompressed, even
+	 * if the client accepts gzip or deflate. A negative value disables
+	 * compression, as the default configuration does; 1024 is a good threshold
+	 * when no servlet filter compresses the responses.
+	 */
+	int compressionThreshold();
+
+	/**
+	 * Deflater level, from 0 (none) to 9 (best).
+	 */
+	int compressionLevel();
+
+	/**
+	 * Threads that serialize responses asked with async().
+	 */
+	int asyncThreads();
+
+	/**
+	 * Responses waiting for a thread. When the queue is full, the request
+	 * thread serializes by itself.
+	 */
+	int asyncQueueCapacity();
+
+	/**
+	 * Milliseconds an async response may wait and write before the container
+	 * times it out.
+	 */
+	long asyncTimeout();
+
+	/**
+	 * Whether the body of a single parameter method is the parameter itself,
+	 * instead of an object keyed by the parameter name. Methods may override
+	 * it with &#064;WithoutRoot.
+	 */
+	boolean deserializeWithoutRoot();
+
+	/**
+	 * Largest request body read, in bytes. Negative disables the limit, as in
+	 * the other body limits.
+	 */
+	long maxBodyBytes();
+
+	/**
+	 * Deepest nesting of arrays and objects in a request body.
+	 */
+	int maxBodyDepth();
+
+	/**
+	 * Most elements of an array in a request body.
+	 */
+	int maxArrayLength();
+
+	/**
+	 * Longest string, in chars, of a request body, names included.
+	 */
+	int maxStringLength();
+
+	/**
+	 * Milliseconds between flushes of an NDJSON response, so clients get the
+	 * lines written so far. Zero flushes each line, and a negative value only
+	 * the end of the response.
+	 */
+	long streamFlushInterval();
+
+	/**
+	 * Whether the Gson adapters of the types of every controller method are
+	 * built, and a sample of each type serialized and deserialized, when
+	 * VRaptor starts instead of on the first requests.
+	 */
+	boolean warmUpOnStartup();
+
+}
@@ -0,0 +1,112 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.lang.reflect.Constructor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.internal.ConstructorConstructor;
+import com.google.gson.internal.ObjectConstructor;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * The only use of Gson internals by the generated adapters, which may change
+ * in any Gson release. Gson's own way of creating instances builds classes
+ * without a no-args constructor, and its reflective adapter is told apart so
+ * a field keeps a better adapter than it. When the internals are not the
+ * expected ones, the public API is used instead: instances need a no-args
+ * constructor, and no adapter is taken as reflective.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class GsonInternals {
+
+	private static final Logger logger = LoggerFactory.getLogger(GsonInternals.class);
+
+	private static final Internals INTERNALS = load();
+
+	private GsonInternals() {
+	}
+
+	/**
+	 * Creates instances of a class.
+	 */
+	interface Factory<T> {
+		T newInstance();
+	}
+
+	static <T> Factory<T> factoryFor(Class<T> type) {
+		if (INTERNALS != null) {
+			return INTERNALS.factoryFor(type);
+		}
+		return new ConstructorFactory<T>(type);
+	}
+
+	/**
+	 * Whether adapter is Gson's reflective adapter, which the adapter of the
+	 * runtime type of a value replaces.
+	 */
+	static boolean isReflective(TypeAdapter<?> adapter) {
+		return INTERNALS != null && INTERNALS.isReflective(adapter);
+	}
+
+	private static Internals load() {
+		try {
+			Internals internals = new Internals();
+			internals.factoryFor(Object.class).newInstance();
+			return internals;
+		} catch (LinkageError e) {
+			logger.warn("Gson internals changed, generated adapters need classes with a no-args constructor", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Loaded only after load() checked the internals are there.
+	 */
+	private static final class Internals {
+
+		private final ConstructorConstructor constructors = new ConstructorConstructor();
+
+		<T> Factory<T> factoryFor(Class<T> type) {
+			final ObjectConstructor<T> constructor = constructors.get(TypeToken.get(type));
+			return new Factory<T>() {
+				public T newInstance() {
+					return constructor.construct();
+				}
+			};
+		}
+
+		boolean isReflective(TypeAdapter<?> adapter) {
+			return adapter instanceof ReflectiveTypeAdapterFactory.Adapter;
+		}
+	}
+
+	private static final class ConstructorFactory<T> implements Factory<T> {
+
+		private final Class<T> type;
+
+		private Constructor<T> constructor;
+
+		ConstructorFactory(Class<T> type) {
+			this.type = type;
+		}
+
+		public T newInstance() {
+			try {
+				if (constructor == null) {
+					Constructor<T> constructor = type.getDeclaredConstructor();
+					constructor.setAccessible(true);
+					this.constructor = constructor;
+				}
+				return constructor.newInstance();
+			} catch (Exception e) {
+				throw new JsonIOException("Unable to create " + type.getName() + " without a no-args constructor", e);
+			}
+		}
+	}
+}
@@ -15,11 +15,17 @@
  */
 package br.com.caelum.vraptor.serialization.gson;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.Collection;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import br.com.caelum.vraptor.core.MethodInfo;
 import br.com.caelum.vraptor.interceptor.TypeNameExtractor;
 import br.com.caelum.vraptor.ioc.Component;
 import br.com.caelum.vraptor.serialization.JSONSerialization;
@@ -27,8 +33,11 @@ import br.com.caelum.vraptor.serialization.NoRootSerialization;
 import br.com.caelum.vraptor.serialization.ProxyInitializer;
 import br.com.caelum.vraptor.serialization.Serializer;
 import br.com.caelum.vraptor.serialization.SerializerBuilder;
+import br.com.caelum.vraptor.serialization.gson.CompressingOutputStream.Compression;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
 import br.com.caelum.vraptor.view.ResultException;
 
+import com.google.common.io.CountingOutputStream;
 import com.google.gson.JsonSerializer;
 
 /**
@@ -42,21 +51,57 @@ public class GsonJSONSerialization implements JSONSerialization {
 
 	protected final HttpServletResponse response;
 
+	protected final HttpServletRequest request;
+
 	protected final TypeNameExtractor extractor;
 
 	protected final ProxyInitializer initializer;
 
 	protected final VraptorGsonBuilder builder;
 
+	protected final GsonSerializationEngine engine;
+
+	protected final MethodInfo methodInfo;
+
+	protected final JsonMetrics metrics;
+
+	protected final AsyncSerializationExecutor executor;
+
+	private SerializationOptions options = SerializationOptions.DEFAULT;
+
+	private boolean async;
+
+	private boolean conditional;
+
+	private Object version;
+
+	private String coding;
+
+	/**
+	 * Bytes sent through the OutputStream of the response, after compression,
+	 * or null when its Writer is used.
+	 */
+	private CountingOutputStream written;
+
 	public GsonJSONSerialization(HttpServletResponse response,
+			HttpServletRequest request,
 			TypeNameExtractor extractor,
 			ProxyInitializer initializer,
-			Collection<JsonSerializer<?>> serializers) {
+			Collection<JsonSerializer<?>> serializers,
+			GsonSerializationEngine engine,
+			MethodInfo methodInfo,
+			JsonMetrics metrics,
+			AsyncSerializationExecutor executor) {
 		this.response = response;
+		this.request = request;
+		this.engine = engine;
 		this.extractor = extractor;
 		this.initializer = initializer;
+		this.methodInfo = methodInfo;
+		this.metrics = metrics;
+		this.executor = executor;
 
-		this.builder = new VraptorGsonBuilder(serializers);
+		this.builder = new VraptorGsonBuilder(serializers, engine);
 	}
 
 	public boolean accepts(String format) {
@@ -68,28 +113,140 @@ public class GsonJSONSerialization implements JSONSerialization {
 	}
 
 	public <T> Serializer from(T object, String alias) {
-		response.setContentType("application/json");
+		setContentType();
 		return getSerializer().from(object, alias);
 	}
 
+	protected void setContentType() {
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+	}
+
 	protected SerializerBuilder getSerializer() {
 		try {
-			return new GsonSerializer(builder, response.getWriter(), extractor, initializer);
+			GsonSerializer serializer = newSerializer(options, openWriter());
+			serializer.setByteCount(written);
+			if (conditional) {
+				serializer.setConditionalGet(new ConditionalGet(request, response, coding, version));
+			}
+			if (async) {
+				serializer.setAsync(executor, request);
+			}
+			return serializer;
 		} catch (IOException e) {
 			throw new ResultException("Unable to serialize data", e);
 		}
 	}
 
+	protected GsonSerializer newSerializer(SerializationOptions options, Writer writer) {
+		return new GsonSerializer(builder, options, writer, extractor, initializer, metrics,
+				methodInfo.getResourceMethod());
+	}
+
+	/**
+	 * Writes UTF-8 straight to the response OutputStream, compressed with the
+	 * best coding accepted by the client when enabled and the body reaches
+	 * the configured threshold.
+	 */
+	protected Writer openWriter() throws IOException {
+		OutputStream out;
+		try {
+			out = written = new CountingOutputStream(response.getOutputStream());
+		} catch (IllegalStateException e) {
+			// someone already used the writer of this response
+			written = null;
+			return writerInUse(e);
+		}
+
+		int threshold = engine.getConfiguration().compressionThreshold();
+		if (threshold >= 0 && isCompressible() && !response.containsHeader("Content-Encoding")) {
+			response.addHeader("Vary", "Accept-Encoding");
+			Compression compression = Compression.accepted(request.getHeader("Accept-Encoding"));
+			if (compression != null) {
+				coding = compression.getName();
+				out = new CompressingOutputStream(response, out, compression, engine.deflaters(compression),
+						threshold);
+			}
+		}
+		return newWriter(out);
+	}
+
+	/**
+	 * Whether the response may be compressed. Bodies flushed while they are
+	 * written are not, since a deflater only hands out large blocks.
+	 */
+	protected boolean isCompressible() {
+		return true;
+	}
+
+	/**
+	 * Encodes the chars written by the serializer into the response bytes.
+	 */
+	protected Writer newWriter(OutputStream out) {
+		return new Utf8Writer(out, engine.buffers());
+	}
+
+	/**
+	 * The writer used when the OutputStream of the response is not available
+	 * because its Writer was already taken.
+	 */
+	protected Writer writerInUse(IllegalStateException e) throws IOException {
+		return response.getWriter();
+	}
+
 	/**
 	 * You can override this method for configuring Driver before serialization
 	 */
 	public <T> NoRootSerialization withoutRoot() {
-		builder.setWithoutRoot(true);
+		options = options.withoutRoot();
+		return this;
+	}
+
+	/**
+	 * Sends a strong ETag computed from the output, and answers 304 without a
+	 * body when the client already has it. The output is serialized twice,
+	 * first to a hashing sink, so prefer {@link #withETag(Object)} when
+	 * there is a cheap version key. Iterator roots get no ETag.
+	 */
+	public GsonJSONSerialization withETag() {
+		this.conditional = true;
+		return this;
+	}
+
+	/**
+	 * Sends an ETag computed from the version key, such as an entity @Version
+	 * or the latest update timestamp, and the projection. When it matches
+	 * If-None-Match nothing is serialized at all.
+	 */
+	public GsonJSONSerialization withETag(Object version) {
+		this.conditional = true;
+		this.version = version;
+		return this;
+	}
+
+	/**
+	 * Serializes and writes the response in the AsyncSerializationExecutor,
+	 * releasing the request thread while slow clients read it. The root must
+	 * not depend on request scoped resources, such as a Hibernate session
+	 * closed at the end of the request, and the VRaptor filter must be
+	 * declared with async-supported. Otherwise it is serialized right away.
+	 */
+	public GsonJSONSerialization async() {
+		this.async = true;
 		return this;
 	}
 
 	public JSONSerialization indented() {
-		builder.indented();
+		options = options.indented();
+		return this;
+	}
+
+	/**
+	 * Serializes with previously built options, such as a constant shared by
+	 * every call of a resource. The alias given to from() still wins.
+	 */
+	public GsonJSONSerialization with(SerializationOptions options) {
+		this.options = checkNotNull(options, "options");
 		return this;
 	}
 }
\ No newline at end of file
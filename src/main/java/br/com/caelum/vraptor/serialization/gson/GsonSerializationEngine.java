@@ -0,0 +1,136 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.annotation.PreDestroy;
+
+import org.hibernate.proxy.HibernateProxy;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.serialization.gson.CompressingOutputStream.Compression;
+import br.com.caelum.vraptor.serialization.gson.adapters.HibernateProxyTypeAdapterFactory;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+
+/**
+ * Application scoped holder of compiled Gson instances. A Gson is built once
+ * for each distinct configuration (adapter set, indentation and exclusion
+ * strategies) and shared between requests, as told in
+ * {@link AbstractGsonEngine}. Adapters that are also TypeAdapters are written
+ * in streaming mode, without building a JsonElement tree, as are the
+ * {@link GsonAdapters}.
+ *
+ * The engine also pools the Deflaters and byte buffers used to write
+ * responses.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class GsonSerializationEngine extends AbstractGsonEngine<JsonSerializer<?>> {
+
+	private static final int MAXIMUM_CACHED_INSTANCES = 256;
+
+	private final DeflaterPool gzip;
+
+	private final DeflaterPool deflate;
+
+	private final BufferPool buffers = new BufferPool();
+
+	public GsonSerializationEngine(GsonConfiguration configuration, GsonAdapters adapters) {
+		super(configuration, adapters, JsonSerializer.class, MAXIMUM_CACHED_INSTANCES);
+		this.gzip = new DeflaterPool(configuration.compressionLevel(), true);
+		this.deflate = new DeflaterPool(configuration.compressionLevel(), false);
+	}
+
+	DeflaterPool deflaters(Compression compression) {
+		return compression == Compression.GZIP ? gzip : deflate;
+	}
+
+	BufferPool buffers() {
+		return buffers;
+	}
+
+	@PreDestroy
+	public void close() {
+		gzip.close();
+		deflate.close();
+	}
+
+	public Gson gsonFor(Collection<JsonSerializer<?>> serializers, boolean indented, ExclusionStrategy... strategies) {
+		return gsonFor(new CacheCounter(), serializers, indented, strategies);
+	}
+
+	/**
+	 * Same as {@link #gsonFor(Collection, boolean, ExclusionStrategy...)},
+	 * counting the lookup as a hit or a miss.
+	 */
+	public Gson gsonFor(CacheCounter counter, final Collection<JsonSerializer<?>> serializers,
+			final boolean indented, final ExclusionStrategy... strategies) {
+		List<?> options = Arrays.asList(indented, Arrays.asList(strategies));
+		return gsonFor(counter, serializers, options, new Callable<Gson>() {
+			public Gson call() {
+				return create(serializers, indented, strategies);
+			}
+		});
+	}
+
+	public boolean hasAdapterFor(Collection<JsonSerializer<?>> serializers, Class<?> type) {
+		for (JsonSerializer<?> adapter : serializers) {
+			if (getAdapterType(adapter).isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		for (Class<?> adapted : adapters.getAdaptedTypes()) {
+			if (adapted.isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected Gson create(Collection<JsonSerializer<?>> serializers, boolean indented,
+			ExclusionStrategy... strategies) {
+		GsonBuilder builder = new GsonBuilder();
+
+		if (indented) {
+			builder.setPrettyPrinting();
+		}
+
+		builder.setExclusionStrategies(strategies);
+
+		List<Class<?>> types = new ArrayList<Class<?>>();
+		for (JsonSerializer<?> adapter : GsonAdapters.inCanonicalOrder(serializers)) {
+			Class<?> type = getAdapterType(adapter);
+			if (adapter instanceof TypeAdapter) {
+				builder.registerTypeAdapterFactory(new TypeHierarchyAdapterFactory(type, (TypeAdapter<?>) adapter));
+			} else {
+				builder.registerTypeHierarchyAdapter(type, adapter);
+			}
+			types.add(type);
+		}
+		types.addAll(adapters.getAdaptedTypes());
+
+		builder.registerTypeAdapterFactory(new GeneratedAdapters(types, strategies));
+		for (TypeAdapterFactory factory : adapters.getFactories()) {
+			builder.registerTypeAdapterFactory(factory);
+		}
+
+		if (Classpath.HIBERNATE && !hasAdapterFor(serializers, HibernateProxy.class)) {
+			builder.registerTypeAdapterFactory(new HibernateProxyTypeAdapterFactory());
+		}
+
+		return builder.create();
+	}
+}
@@ -19,22 +19,31 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.servlet.http.HttpServletRequest;
+
 import br.com.caelum.vraptor.interceptor.TypeNameExtractor;
+import br.com.caelum.vraptor.resource.ResourceMethod;
 import br.com.caelum.vraptor.serialization.ProxyInitializer;
 import br.com.caelum.vraptor.serialization.Serializer;
 import br.com.caelum.vraptor.serialization.SerializerBuilder;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
 import br.com.caelum.vraptor.serialization.xstream.Serializee;
 
+import com.google.common.collect.Multimap;
+import com.google.common.io.CountingOutputStream;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A SerializerBuilder based on Gson
@@ -53,18 +62,64 @@ public class GsonSerializer implements SerializerBuilder {
 
 	private final Serializee serializee = new Serializee();
 
-	protected VraptorGsonBuilder builder;
+	/**
+	 * Paths of an elements root, resolved as each element type shows up.
+	 */
+	private final List<String> elementIncludes = new ArrayList<String>();
+
+	private final List<String> elementExcludes = new ArrayList<String>();
+
+	private boolean elementTypesFound;
+
+	private final JsonMetrics metrics;
+
+	private final ResourceMethod method;
+
+	/**
+	 * Elements written by the last serialization of a collection or iterator
+	 * root, or -1.
+	 */
+	private long elementCount = -1;
+
+	private ConditionalGet conditional;
+
+	private AsyncSerializationExecutor executor;
+
+	private HttpServletRequest request;
+
+	private final CacheCounter cacheCounter = new CacheCounter();
+
+	private CountingOutputStream written;
+
+	protected final VraptorGsonBuilder builder;
+
+	/**
+	 * Options of this serialization, replaced by a copy on each change.
+	 */
+	protected SerializationOptions options;
 
 	public GsonSerializer(VraptorGsonBuilder builder, Writer writer, TypeNameExtractor extractor,
 			ProxyInitializer initializer) {
+		this(builder, SerializationOptions.DEFAULT, writer, extractor, initializer, JsonMetrics.NONE, null);
+	}
+
+	public GsonSerializer(VraptorGsonBuilder builder, SerializationOptions options, Writer writer,
+			TypeNameExtractor extractor, ProxyInitializer initializer, JsonMetrics metrics, ResourceMethod method) {
 		this.writer = writer;
 		this.extractor = extractor;
 		this.initializer = initializer;
 		this.builder = builder;
+		this.options = options;
+		this.metrics = metrics;
+		this.method = method;
 	}
 
 	public Serializer exclude(String... names) {
+		findElementTypes();
 		serializee.excludeAll(names);
+		if (isElementsRoot()) {
+			Collections.addAll(elementExcludes, names);
+		}
 		return this;
 	}
 
@@ -74,33 +129,52 @@ public class GsonSerializer implements SerializerBuilder {
 		serializee.setRootClass(initializer.getActualClass(obj));
 
 		if (alias == null) {
-			if (Collection.class.isInstance(obj) && (List.class.isInstance(obj))) {
+			alias = options.getAlias();
+		}
+		if (alias == null) {
+			if (List.class.isInstance(obj) || (!Collection.class.isInstance(obj) && RootElements.isElements(obj))) {
 				alias = "list";
 			} else {
 				alias = extractor.nameFor(serializee.getRootClass());
 			}
 		}
 
-		builder.setAlias(alias);
+		options = options.withAlias(alias);
 
 		setRoot(obj);
 	}
 
 	private void setRoot(Object obj) {
-		if (Collection.class.isInstance(obj)) {
-			this.serializee.setRoot(normalizeList(obj));
-		} else {
-			this.serializee.setRoot(obj);
+		if (RootElements.isElements(obj)) {
+			serializee.setElementTypes(new HashSet<Class<?>>());
+			elementTypesFound = false;
 		}
+		this.serializee.setRoot(obj);
 	}
 
-	@SuppressWarnings("unchecked")
-	private Collection<Object> normalizeList(Object obj) {
-		Collection<Object> list;
-		list = (Collection<Object>) obj;
-		serializee.setElementTypes(findElementTypes(list));
+	/**
+	 * Finds the classes of the elements of a collection root before its first
+	 * include or exclude, so a path that none of them has fails right there.
+	 * Iterators can only be read once, so theirs are found while writing.
+	 */
+	private void findElementTypes() {
+		if (!isElementsRoot() || elementTypesFound || !(serializee.getRoot() instanceof Collection)) {
+			return;
+		}
+		elementTypesFound = true;
+
+		Set<Class<?>> types = serializee.getElementTypes();
+		Class<?> last = null;
+		for (Object element : (Collection<?>) serializee.getRoot()) {
+			if (element != null && element.getClass() != last && !isPrimitive(element.getClass())) {
+				types.add(initializer.getActualClass(element));
+				last = element.getClass();
+			}
+		}
+	}
 
-		return list;
+	private boolean isElementsRoot() {
+		return serializee.getElementTypes() != null;
 	}
 
 	public <T> Serializer from(T object, String alias) {
@@ -113,45 +187,248 @@ public class GsonSerializer implements SerializerBuilder {
 		return this;
 	}
 
-	private Set<Class<?>> findElementTypes(Collection<Object> list) {
-		Set<Class<?>> set = new HashSet<Class<?>>();
-		for (Object element : list) {
-			if (element != null && !isPrimitive(element.getClass())) {
-				set.add(initializer.getActualClass(element));
-			}
-		}
-		return set;
-	}
-
 	public Serializer include(String... fields) {
+		findElementTypes();
 		serializee.includeAll(fields);
+		if (isElementsRoot()) {
+			Collections.addAll(elementIncludes, fields);
+		}
 		return this;
 	}
 
 	public void serialize() {
-		try {
-			Object root = serializee.getRoot();
+		if (executor == null) {
+			writeResponse(writer);
+			return;
+		}
 
-			builder.setExclusionStrategies(new Exclusions(serializee));
+		final AbortableWriter out = new AbortableWriter(writer);
+		executor.execute(request, new AsyncSerializationExecutor.Serialization() {
+			public void run() {
+				writeResponse(out);
+			}
 
-			Gson gson = builder.create();
+			public void abort() {
+				out.abort();
+			}
+		});
+	}
 
-			String alias = builder.getAlias();
-			if (builder.isWithoutRoot()) {
-				writer.write(gson.toJson(root));
-			} else {
-				Map<String, Object> tree = new HashMap<String, Object>();
-				tree.put(alias, root);
-				writer.write(gson.toJson(tree));
+	/**
+	 * Writes the response through out, a view of the writer of this
+	 * serializer.
+	 */
+	private void writeResponse(Writer out) {
+		boolean measure = method != null && metrics.isEnabled();
+		long start = measure ? System.nanoTime() : 0;
+		int hits = cacheCounter.getHits();
+		int misses = cacheCounter.getMisses();
+		long bytes = written == null ? 0 : written.getCount();
+
+		boolean closed = false;
+		try {
+			if (conditional != null && conditional.isApplicable()) {
+				byte[] digest = conditionalDigest();
+				if (digest != null && !conditional.send(digest)) {
+					out.close();
+					closed = true;
+					return;
+				}
 			}
 
-			writer.flush();
-			writer.close();
+			write(out);
+			out.close();
+			closed = true;
 		} catch (IOException e) {
 			throw new RuntimeException("Não pode serializar", e);
+		} finally {
+			if (!closed && writer instanceof Releasable) {
+				// a failed body is not sent, but its buffers and Deflater go back to the pools
+				((Releasable) writer).release();
+			}
+		}
+
+		if (measure) {
+			metrics.serialized(method, System.nanoTime() - start, written == null ? -1 : written.getCount() - bytes,
+					elementCount, cacheCounter.getHits() - hits, cacheCounter.getMisses() - misses);
 		}
 	}
 
+	private void write(Writer out) throws IOException {
+		Object root = serializee.getRoot();
+
+		options = options.withProjection(new Exclusions(serializee));
+
+		Gson gson = builder.create(options, cacheCounter);
+
+		JsonWriter jsonWriter = newJsonWriter(out);
+		if (options.isIndented()) {
+			jsonWriter.setIndent("  ");
+		}
+
+		if (!options.isWithoutRoot()) {
+			jsonWriter.beginObject();
+			jsonWriter.name(options.getAlias());
+		}
+
+		if (isElementsRoot() && !builder.hasAdapterFor(root.getClass())) {
+			writeElements(RootElements.iterate(root), gson, jsonWriter, out);
+		} else {
+			elementCount = root instanceof Collection ? ((Collection<?>) root).size() : -1;
+			gson.toJson(root, root.getClass(), jsonWriter);
+		}
+
+		if (!options.isWithoutRoot()) {
+			jsonWriter.endObject();
+		}
+
+		jsonWriter.flush();
+	}
+
+	/**
+	 * The JsonWriter every serialization is written through. Subclasses may
+	 * return one that writes another encoding of the same events.
+	 */
+	protected JsonWriter newJsonWriter(Writer out) {
+		return new JsonWriter(out);
+	}
+
+	/**
+	 * Starts the elements of a collection or iterator root. Subclasses may lay
+	 * the elements out otherwise, such as one per line.
+	 */
+	protected void beginElements(JsonWriter jsonWriter, Writer out) throws IOException {
+		jsonWriter.beginArray();
+	}
+
+	/**
+	 * Called after each element of a collection or iterator root is written.
+	 */
+	protected void endElement(JsonWriter jsonWriter, Writer out) throws IOException {
+	}
+
+	protected void endElements(JsonWriter jsonWriter, Writer out) throws IOException {
+		jsonWriter.endArray();
+	}
+
+	/**
+	 * Digest of the version key and a stable form of everything that shapes
+	 * the output, so every node of a cluster sends the same ETag, or,
+	 * without a version, of the output itself, written to a hashing sink
+	 * before the real response. Roots that can only be read once get no ETag.
+	 */
+	private byte[] conditionalDigest() throws IOException {
+		Object version = conditional.getVersion();
+		if (version != null) {
+			DigestWriter digest = new DigestWriter();
+			digest.write(version + "|" + getClass().getName() + "|" + serializee.getRootClass().getName() + "|"
+					+ options.getAlias() + "|" + options.isWithoutRoot() + "|" + options.isIndented() + "|"
+					+ serializee.isRecursive() + "|" + sorted(serializee.getIncludes()) + "|"
+					+ sorted(serializee.getExcludes()) + "|" + elementIncludes + "|" + elementExcludes);
+			return digest.digest();
+		}
+
+		if (!RootElements.isReplayable(serializee.getRoot())) {
+			return null;
+		}
+
+		DigestWriter digest = new DigestWriter();
+		write(digest);
+		return digest.digest();
+	}
+
+	/**
+	 * Include or exclude paths with the class each one resolved to, in an
+	 * order that is the same on every JVM.
+	 */
+	private static List<String> sorted(Multimap<String, Class<?>> paths) {
+		List<String> sorted = new ArrayList<String>(paths.size());
+		for (Entry<String, Class<?>> path : paths.entries()) {
+			sorted.add(path.getKey() + "=" + path.getValue().getName());
+		}
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Answers conditional GETs with ETags instead of always sending the body.
+	 */
+	void setConditionalGet(ConditionalGet conditional) {
+		this.conditional = conditional;
+	}
+
+	/**
+	 * Reports the bytes written to this stream, below the writer, as the size
+	 * of each serialization.
+	 */
+	void setByteCount(CountingOutputStream written) {
+		this.written = written;
+	}
+
+	/**
+	 * Serializes in the executor, releasing the thread of the request.
+	 */
+	void setAsync(AsyncSerializationExecutor executor, HttpServletRequest request) {
+		this.executor = executor;
+		this.request = request;
+	}
+
+	/**
+	 * Writes the elements in a single pass, pulling them one at a time. Element
+	 * types are only needed to resolve include and exclude paths, so those not
+	 * found by {@link #findElementTypes()}, such as the ones of an Iterator,
+	 * are discovered while writing, once per distinct class, and only when
+	 * there are paths to resolve.
+	 */
+	private void writeElements(Iterator<?> elements, Gson gson, JsonWriter jsonWriter, Writer out)
+			throws IOException {
+		boolean resolvePaths = !elementIncludes.isEmpty() || !elementExcludes.isEmpty();
+		Set<Class<?>> seen = new HashSet<Class<?>>();
+		Class<?> last = null;
+		elementCount = 0;
+
+		try {
+			beginElements(jsonWriter, out);
+			while (elements.hasNext()) {
+				Object element = elements.next();
+				elementCount++;
+				if (element == null) {
+					jsonWriter.nullValue();
+					endElement(jsonWriter, out);
+					continue;
+				}
+
+				Class<?> type = element.getClass();
+				if (resolvePaths && type != last && seen.add(type) && !isPrimitive(type)) {
+					if (addElementType(initializer.getActualClass(element))) {
+						options = options.withProjection(new Exclusions(serializee));
+						gson = builder.create(options, cacheCounter);
+					}
+				}
+				last = type;
+
+				gson.toJson(element, type, jsonWriter);
+				endElement(jsonWriter, out);
+			}
+			endElements(jsonWriter, out);
+		} finally {
+			RootElements.close(elements);
+		}
+	}
+
+	private boolean addElementType(Class<?> type) {
+		Set<Class<?>> known = serializee.getElementTypes();
+		if (!known.add(type)) {
+			return false;
+		}
+
+		serializee.setElementTypes(Collections.<Class<?>> singleton(type));
+		serializee.includeAll(elementIncludes.toArray(new String[elementIncludes.size()]));
+		serializee.excludeAll(elementExcludes.toArray(new String[elementExcludes.size()]));
+		serializee.setElementTypes(known);
+		return true;
+	}
+
 	public Serializer recursive() {
 		this.serializee.setRecursive(true);
 		return this;
@@ -0,0 +1,204 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.caelum.vraptor.Resource;
+import br.com.caelum.vraptor.deserialization.gson.GsonDeserializationEngine;
+import br.com.caelum.vraptor.interceptor.DefaultTypeNameExtractor;
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.ioc.Container;
+import br.com.caelum.vraptor.ioc.StereotypeHandler;
+import br.com.caelum.vraptor.resource.DefaultResourceClass;
+import br.com.caelum.vraptor.resource.DefaultResourceMethod;
+import br.com.caelum.vraptor.serialization.NullProxyInitializer;
+import br.com.caelum.vraptor.serialization.xstream.Serializee;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonSerializer;
+
+/**
+ * Builds, when VRaptor starts, what the first requests of each controller
+ * would: the Gson instances of the engines, with the exclusions of
+ * serializations without include or exclude, recursive or not, and their
+ * adapters for the types of the parameters and return values of its
+ * methods. A sample of each type is then deserialized from {} and
+ * serialized, so the classes are loaded and the code compiled too. It only
+ * runs when warmUpOnStartup() of the GsonConfiguration is true.
+ *
+ * The Gson instances are built with every adapter requests use, so the
+ * first request finds them in the cache. When the container cannot provide
+ * one of them without a request, that Gson would never be cached, so it is
+ * not built. A failure is logged and never stops the application.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class GsonWarmUp implements StereotypeHandler {
+
+	private static final Logger logger = LoggerFactory.getLogger(GsonWarmUp.class);
+
+	private final GsonConfiguration configuration;
+
+	private final GsonAdapters adapters;
+
+	private final GsonSerializationEngine serializationEngine;
+
+	private final GsonDeserializationEngine deserializationEngine;
+
+	private final Container container;
+
+	public GsonWarmUp(GsonConfiguration configuration, GsonAdapters adapters,
+			GsonSerializationEngine serializationEngine, GsonDeserializationEngine deserializationEngine,
+			Container container) {
+		this.configuration = configuration;
+		this.adapters = adapters;
+		this.serializationEngine = serializationEngine;
+		this.deserializationEngine = deserializationEngine;
+		this.container = container;
+	}
+
+	public Class<? extends Annotation> stereotype() {
+		return Resource.class;
+	}
+
+	public void handle(Class<?> controller) {
+		if (!configuration.warmUpOnStartup()) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			Set<Class<?>> types = typesOf(controller);
+			warmUp(types);
+			logger.info("Warmed up {} types of {} in {} ms", new Object[] { types.size(), controller.getName(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) });
+		} catch (RuntimeException e) {
+			logger.warn("Unable to warm up " + controller.getName(), e);
+		}
+	}
+
+	private Set<Class<?>> typesOf(Class<?> controller) {
+		Set<Class<?>> types = new LinkedHashSet<Class<?>>();
+		for (Method method : controller.getMethods()) {
+			if (method.getDeclaringClass() == Object.class) {
+				continue;
+			}
+			DefaultResourceMethod resourceMethod = new DefaultResourceMethod(new DefaultResourceClass(controller),
+					method);
+			for (Type type : deserializationEngine.parameterTypesFor(resourceMethod)) {
+				collect(type, types);
+			}
+			collect(TypeToken.of(controller).resolveType(method.getGenericReturnType()).getType(), types);
+		}
+		return types;
+	}
+
+	/**
+	 * The classes of a type and of its type arguments with adapters of their
+	 * own, leaving out primitives, JDK types and types without instances.
+	 */
+	private void collect(Type type, Set<Class<?>> types) {
+		if (type instanceof ParameterizedType) {
+			collect(((ParameterizedType) type).getRawType(), types);
+			for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+				collect(argument, types);
+			}
+		} else if (type instanceof GenericArrayType) {
+			collect(((GenericArrayType) type).getGenericComponentType(), types);
+		} else if (type instanceof WildcardType) {
+			for (Type bound : ((WildcardType) type).getUpperBounds()) {
+				collect(bound, types);
+			}
+		} else if (type instanceof Class) {
+			Class<?> raw = (Class<?>) type;
+			if (raw.isArray()) {
+				collect(raw.getComponentType(), types);
+			} else if (!raw.isPrimitive() && !raw.isInterface() && !Modifier.isAbstract(raw.getModifiers())
+					&& !raw.getName().startsWith("java")) {
+				types.add(raw);
+			}
+		}
+	}
+
+	private void warmUp(Set<Class<?>> types) {
+		List<JsonSerializer<?>> serializers = instancesOf(adapters.getSerializerClasses());
+		List<JsonDeserializer<?>> deserializers = instancesOf(adapters.getDeserializerClasses());
+
+		VraptorGsonBuilder builder = serializers == null ? null : new VraptorGsonBuilder(serializers,
+				serializationEngine);
+		Gson serialization = builder == null ? null : withoutProjection(builder, false);
+		Gson recursive = builder == null ? null : withoutProjection(builder, true);
+		Gson deserialization = deserializers == null ? null : deserializationEngine.gsonFor(deserializers);
+
+		for (Class<?> type : types) {
+			try {
+				if (builder != null) {
+					serialization.getAdapter(type);
+					recursive.getAdapter(type);
+				}
+				if (deserialization != null) {
+					deserialization.getAdapter(type);
+					if (builder != null && !type.isEnum()) {
+						Object sample = deserialization.fromJson("{}", type);
+						new GsonSerializer(builder, new StringWriter(), new DefaultTypeNameExtractor(),
+								new NullProxyInitializer()).from(sample).serialize();
+					}
+				}
+			} catch (RuntimeException e) {
+				logger.debug("Unable to warm up " + type.getName(), e);
+			}
+		}
+	}
+
+	/**
+	 * The Gson of serializations without include or exclude, as GsonSerializer
+	 * asks for it.
+	 */
+	private Gson withoutProjection(VraptorGsonBuilder builder, boolean recursive) {
+		Serializee serializee = new Serializee();
+		serializee.setRecursive(recursive);
+		return builder.create(SerializationOptions.DEFAULT.withProjection(new Exclusions(serializee)));
+	}
+
+	/**
+	 * The instances of all the components, or null when one of them is not
+	 * available outside a request.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> List<T> instancesOf(List<Class<?>> components) {
+		List<T> instances = new ArrayList<T>(components.size());
+		for (Class<?> component : components) {
+			try {
+				Object instance = container.instanceFor(component);
+				if (instance != null) {
+					instances.add((T) instance);
+				}
+			} catch (RuntimeException e) {
+				logger.info("{} is not available on startup, its Gson is built by the first request",
+						component.getName());
+				return null;
+			}
+		}
+		return Collections.unmodifiableList(instances);
+	}
+}
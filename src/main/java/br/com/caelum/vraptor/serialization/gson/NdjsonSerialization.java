@@ -0,0 +1,130 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.Writer;
+import java.util.Collection;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import br.com.caelum.vraptor.core.MethodInfo;
+import br.com.caelum.vraptor.interceptor.TypeNameExtractor;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.serialization.NoRootSerialization;
+import br.com.caelum.vraptor.serialization.ProxyInitializer;
+import br.com.caelum.vraptor.serialization.Serialization;
+import br.com.caelum.vraptor.serialization.Serializer;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+
+import com.google.gson.JsonSerializer;
+
+/**
+ * Serializes as newline-delimited JSON (application/x-ndjson), one element of
+ * the root per line, flushed while it is written so clients process long
+ * results before the response ends. It has the same adapters, projections,
+ * ETags and async mode of {@link GsonJSONSerialization}, but is never
+ * compressed. It is chosen by result.use(representation()) when the Accept
+ * header asks for NDJSON, or explicitly with
+ * result.use(NdjsonSerialization.class).
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+public class NdjsonSerialization implements Serialization {
+
+	public static final String CONTENT_TYPE = "application/x-ndjson";
+
+	private final Lines serialization;
+
+	public NdjsonSerialization(HttpServletResponse response,
+			HttpServletRequest request,
+			TypeNameExtractor extractor,
+			ProxyInitializer initializer,
+			Collection<JsonSerializer<?>> serializers,
+			GsonSerializationEngine engine,
+			MethodInfo methodInfo,
+			JsonMetrics metrics,
+			AsyncSerializationExecutor executor) {
+		this.serialization = new Lines(response, request, extractor, initializer, serializers, engine, methodInfo,
+				metrics, executor);
+	}
+
+	public boolean accepts(String format) {
+		return "ndjson".equals(format);
+	}
+
+	public <T> Serializer from(T object) {
+		return serialization.from(object);
+	}
+
+	public <T> Serializer from(T object, String alias) {
+		return serialization.from(object, alias);
+	}
+
+	/**
+	 * Lines never have a root, so this changes nothing.
+	 */
+	public NoRootSerialization withoutRoot() {
+		return this;
+	}
+
+	/**
+	 * @see GsonJSONSerialization#withETag()
+	 */
+	public NdjsonSerialization withETag() {
+		serialization.withETag();
+		return this;
+	}
+
+	/**
+	 * @see GsonJSONSerialization#withETag(Object)
+	 */
+	public NdjsonSerialization withETag(Object version) {
+		serialization.withETag(version);
+		return this;
+	}
+
+	/**
+	 * @see GsonJSONSerialization#async()
+	 */
+	public NdjsonSerialization async() {
+		serialization.async();
+		return this;
+	}
+
+	public NdjsonSerialization with(SerializationOptions options) {
+		serialization.with(options);
+		return this;
+	}
+
+	/**
+	 * The JSON serialization writing lines. It is not a component, so
+	 * JSONSerialization keeps a single implementation.
+	 */
+	private static class Lines extends GsonJSONSerialization {
+
+		Lines(HttpServletResponse response, HttpServletRequest request, TypeNameExtractor extractor,
+				ProxyInitializer initializer, Collection<JsonSerializer<?>> serializers,
+				GsonSerializationEngine engine, MethodInfo methodInfo, JsonMetrics metrics,
+				AsyncSerializationExecutor executor) {
+			super(response, request, extractor, initializer, serializers, engine, methodInfo, metrics, executor);
+		}
+
+		@Override
+		protected void setContentType() {
+			response.setContentType(CONTENT_TYPE);
+			response.setCharacterEncoding("UTF-8");
+		}
+
+		@Override
+		protected GsonSerializer newSerializer(SerializationOptions options, Writer writer) {
+			return new NdjsonSerializer(builder, options, writer, extractor, initializer, metrics,
+					methodInfo.getResourceMethod(), engine.getConfiguration().streamFlushInterval());
+		}
+
+		@Override
+		protected boolean isCompressible() {
+			return false;
+		}
+	}
+}
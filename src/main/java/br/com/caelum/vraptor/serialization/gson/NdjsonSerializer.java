@@ -0,0 +1,89 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import br.com.caelum.vraptor.interceptor.TypeNameExtractor;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+import br.com.caelum.vraptor.serialization.ProxyInitializer;
+import br.com.caelum.vraptor.serialization.Serializer;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A GsonSerializer writing newline-delimited JSON: each element of the root
+ * on its own line, without a root or an enclosing array, flushed every
+ * flushInterval milliseconds so clients read the lines as they come. A root
+ * that is not a collection or an iterator is a single line. Indentation is
+ * ignored, since it would break the lines.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+
+public class NdjsonSerializer extends GsonSerializer {
+
+	private final long flushInterval;
+
+	private long lastFlush;
+
+	public NdjsonSerializer(VraptorGsonBuilder builder, SerializationOptions options, Writer writer,
+			TypeNameExtractor extractor, ProxyInitializer initializer, JsonMetrics metrics, ResourceMethod method,
+			long flushInterval) {
+		super(builder, lines(options), writer, extractor, initializer, metrics, method);
+		this.flushInterval = flushInterval < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(flushInterval);
+	}
+
+	private static SerializationOptions lines(SerializationOptions options) {
+		return SerializationOptions.DEFAULT.withAlias(options.getAlias()).withoutRoot()
+				.withProjection(options.getStrategies());
+	}
+
+	@Override
+	public <T> Serializer from(T object) {
+		return super.from(elements(object));
+	}
+
+	@Override
+	public <T> Serializer from(T object, String alias) {
+		return super.from(elements(object), alias);
+	}
+
+	private static Object elements(Object object) {
+		if (object == null || RootElements.isElements(object)) {
+			return object;
+		}
+		return Collections.singletonList(object);
+	}
+
+	@Override
+	protected JsonWriter newJsonWriter(Writer out) {
+		JsonWriter writer = new JsonWriter(out);
+		writer.setLenient(true);
+		return writer;
+	}
+
+	@Override
+	protected void beginElements(JsonWriter jsonWriter, Writer out) {
+		lastFlush = System.nanoTime();
+	}
+
+	@Override
+	protected void endElement(JsonWriter jsonWriter, Writer out) throws IOException {
+		out.write('\n');
+		if (flushInterval >= 0) {
+			long now = System.nanoTime();
+			if (now - lastFlush >= flushInterval) {
+				jsonWriter.flush();
+				lastFlush = now;
+			}
+		}
+	}
+
+	@Override
+	protected void endElements(JsonWriter jsonWriter, Writer out) {
+	}
+}
@@ -0,0 +1,110 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Writes each char as a single byte, its low eight bits, in a pooled buffer.
+ * Binary encodings are written through it, so counting, hashing and
+ * compression work the same as for text, one char per byte.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class OctetWriter extends Writer implements Releasable {
+
+	private final OutputStream out;
+
+	private final BufferPool pool;
+
+	private byte[] buffer;
+
+	private int position;
+
+	OctetWriter(OutputStream out, BufferPool pool) {
+		this.out = out;
+		this.pool = pool;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		ensure();
+		buffer[position++] = (byte) c;
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		int end = offset + length;
+		while (offset < end) {
+			ensure();
+			byte[] bytes = buffer;
+			int p = position;
+			int limit = Math.min(end, offset + bytes.length - p);
+			while (offset < limit) {
+				bytes[p++] = (byte) chars[offset++];
+			}
+			position = p;
+		}
+	}
+
+	@Override
+	public void write(String value, int offset, int length) throws IOException {
+		int end = offset + length;
+		while (offset < end) {
+			ensure();
+			byte[] bytes = buffer;
+			int p = position;
+			int limit = Math.min(end, offset + bytes.length - p);
+			while (offset < limit) {
+				bytes[p++] = (byte) value.charAt(offset++);
+			}
+			position = p;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			drain();
+			out.close();
+		} finally {
+			if (buffer != null) {
+				pool.release(buffer);
+				buffer = null;
+			}
+		}
+	}
+
+	public void release() {
+		if (buffer != null) {
+			pool.release(buffer);
+			buffer = null;
+		}
+		position = 0;
+		if (out instanceof Releasable) {
+			((Releasable) out).release();
+		}
+	}
+
+	private void ensure() throws IOException {
+		if (buffer == null) {
+			buffer = pool.borrow();
+		} else if (position == buffer.length) {
+			drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
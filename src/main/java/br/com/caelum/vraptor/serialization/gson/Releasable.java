@@ -0,0 +1,17 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+/**
+ * A writer or stream holding pooled buffers or Deflaters, which it gives back
+ * without sending what it still holds when a serialization fails.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+interface Releasable {
+
+	/**
+	 * Returns the pooled resources and discards what was not sent yet, along
+	 * with the Releasable below it. Does nothing once closed.
+	 */
+	void release();
+}
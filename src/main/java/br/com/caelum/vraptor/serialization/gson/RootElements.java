@@ -0,0 +1,49 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Roots that are serialized as a sequence of elements: collections,
+ * iterators and, when Hibernate is on the classpath, ScrollableResults. Other
+ * Iterables, such as entities that iterate over their children, are
+ * serialized as objects.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class RootElements {
+
+	private RootElements() {
+	}
+
+	static boolean isElements(Object root) {
+		return root instanceof Collection || root instanceof Iterator
+				|| (Classpath.HIBERNATE && ScrollableResultsIterator.isScrollable(root));
+	}
+
+	/**
+	 * Whether the root can be written more than once.
+	 */
+	static boolean isReplayable(Object root) {
+		return !(root instanceof Iterator) && !(Classpath.HIBERNATE && ScrollableResultsIterator.isScrollable(root));
+	}
+
+	static Iterator<?> iterate(Object root) {
+		if (root instanceof Collection) {
+			return ((Collection<?>) root).iterator();
+		}
+		if (root instanceof Iterator) {
+			return (Iterator<?>) root;
+		}
+		return new ScrollableResultsIterator((org.hibernate.ScrollableResults) root);
+	}
+
+	static void close(Iterator<?> elements) throws IOException {
+		if (elements instanceof Closeable) {
+			((Closeable) elements).close();
+		}
+	}
+}
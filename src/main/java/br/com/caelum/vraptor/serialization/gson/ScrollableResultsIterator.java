@@ -0,0 +1,75 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+/**
+ * Iterates over Hibernate ScrollableResults one row at a time, so large query
+ * results can be serialized without loading them into a List. Optionally
+ * clears the session every few rows, after they were written, to keep the
+ * persistence context from growing with the result.
+ *
+ * Rows with a single column are returned as that column's value.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public class ScrollableResultsIterator implements Iterator<Object>, Closeable {
+
+	private final ScrollableResults results;
+
+	private final Session session;
+
+	private final int clearInterval;
+
+	private int rows;
+
+	private Boolean hasNext;
+
+	public ScrollableResultsIterator(ScrollableResults results) {
+		this(results, null, 0);
+	}
+
+	public ScrollableResultsIterator(ScrollableResults results, Session session, int clearInterval) {
+		this.results = results;
+		this.session = session;
+		this.clearInterval = clearInterval;
+	}
+
+	public boolean hasNext() {
+		if (hasNext == null) {
+			if (session != null && clearInterval > 0 && rows > 0 && rows % clearInterval == 0) {
+				session.clear();
+			}
+			hasNext = results.next();
+		}
+		return hasNext;
+	}
+
+	public Object next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		hasNext = null;
+		rows++;
+
+		Object[] row = results.get();
+		return row.length == 1 ? row[0] : row;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void close() {
+		results.close();
+	}
+
+	static boolean isScrollable(Object root) {
+		return root instanceof ScrollableResults;
+	}
+}
@@ -0,0 +1,100 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.util.Arrays;
+
+import com.google.gson.ExclusionStrategy;
+
+/**
+ * Immutable options of a single serialization: alias, root on or off,
+ * indentation and projection. Every change returns a copy, so an instance may
+ * be kept and shared between requests and threads, while the engine and its
+ * compiled Gson instances never see per-request state.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+
+public final class SerializationOptions {
+
+	private static final ExclusionStrategy[] NO_STRATEGIES = new ExclusionStrategy[0];
+
+	public static final SerializationOptions DEFAULT = new SerializationOptions(null, false, false, NO_STRATEGIES);
+
+	private final String alias;
+
+	private final boolean withoutRoot;
+
+	private final boolean indented;
+
+	private final ExclusionStrategy[] strategies;
+
+	private SerializationOptions(String alias, boolean withoutRoot, boolean indented, ExclusionStrategy[] strategies) {
+		this.alias = alias;
+		this.withoutRoot = withoutRoot;
+		this.indented = indented;
+		this.strategies = strategies;
+	}
+
+	public SerializationOptions withAlias(String alias) {
+		return new SerializationOptions(alias, withoutRoot, indented, strategies);
+	}
+
+	public SerializationOptions withoutRoot() {
+		return new SerializationOptions(alias, true, indented, strategies);
+	}
+
+	public SerializationOptions indented() {
+		return new SerializationOptions(alias, withoutRoot, true, strategies);
+	}
+
+	public SerializationOptions withProjection(ExclusionStrategy... strategies) {
+		return new SerializationOptions(alias, withoutRoot, indented, strategies.clone());
+	}
+
+	public String getAlias() {
+		return alias;
+	}
+
+	public boolean isWithoutRoot() {
+		return withoutRoot;
+	}
+
+	public boolean isIndented() {
+		return indented;
+	}
+
+	/**
+	 * A copy of the exclusion strategies of the projection.
+	 */
+	public ExclusionStrategy[] getStrategies() {
+		return strategies.clone();
+	}
+
+	ExclusionStrategy[] strategies() {
+		return strategies;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = alias == null ? 0 : alias.hashCode();
+		hash = 31 * hash + Arrays.hashCode(strategies);
+		return 31 * (31 * hash + (withoutRoot ? 1 : 0)) + (indented ? 1 : 0);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof SerializationOptions)) {
+			return false;
+		}
+		SerializationOptions other = (SerializationOptions) obj;
+		return withoutRoot == other.withoutRoot && indented == other.indented
+				&& (alias == null ? other.alias == null : alias.equals(other.alias))
+				&& Arrays.equals(strategies, other.strategies);
+	}
+
+	@Override
+	public String toString() {
+		return "SerializationOptions[alias=" + alias + ", withoutRoot=" + withoutRoot + ", indented=" + indented
+				+ ", projection=" + Arrays.asList(strategies) + "]";
+	}
+}
@@ -0,0 +1,26 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+/**
+ * JSON representations of Calendar and Date values.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public enum TemporalFormat {
+
+	/**
+	 * {"time":"1346641200000","timezone":"America/Sao_Paulo"}, like XStream.
+	 */
+	OBJECT,
+
+	/**
+	 * The number of milliseconds since the epoch: 1346641200000
+	 */
+	EPOCH_MILLIS,
+
+	/**
+	 * An ISO-8601 string with milliseconds and offset:
+	 * "2012-09-03T00:00:00.000-03:00"
+	 */
+	ISO_8601
+}
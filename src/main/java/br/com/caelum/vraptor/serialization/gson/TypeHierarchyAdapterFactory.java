@@ -0,0 +1,30 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Uses a TypeAdapter for a type and all its subtypes, as
+ * GsonBuilder.registerTypeHierarchyAdapter does for serializers.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class TypeHierarchyAdapterFactory implements TypeAdapterFactory {
+
+	private final Class<?> type;
+
+	private final TypeAdapter<?> adapter;
+
+	TypeHierarchyAdapterFactory(Class<?> type, TypeAdapter<?> adapter) {
+		this.type = type;
+		this.adapter = adapter;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+		return type.isAssignableFrom(typeToken.getRawType()) ? (TypeAdapter<T>) adapter : null;
+	}
+}
@@ -0,0 +1,175 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Encodes straight to UTF-8 bytes in a pooled buffer, without a CharsetEncoder
+ * or intermediate arrays. Runs of ASCII, which is almost everything JsonWriter
+ * writes, are copied with a single comparison per char.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class Utf8Writer extends Writer implements Releasable {
+
+	private final OutputStream out;
+
+	private final BufferPool pool;
+
+	private byte[] buffer;
+
+	private int position;
+
+	/**
+	 * High surrogate written without its low half yet.
+	 */
+	private char surrogate;
+
+	Utf8Writer(OutputStream out, BufferPool pool) {
+		this.out = out;
+		this.pool = pool;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		ensure(4);
+		encode((char) c);
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		int end = offset + length;
+		while (offset < end) {
+			ensure(16);
+			int limit = Math.min(end, offset + (buffer.length - position - 1) / 3);
+			byte[] bytes = buffer;
+			int p = position;
+			if (surrogate == 0) {
+				while (offset < limit) {
+					char c = chars[offset];
+					if (c >= 0x80) {
+						break;
+					}
+					bytes[p++] = (byte) c;
+					offset++;
+				}
+			}
+			position = p;
+			while (offset < limit) {
+				encode(chars[offset++]);
+			}
+		}
+	}
+
+	@Override
+	public void write(String value, int offset, int length) throws IOException {
+		int end = offset + length;
+		while (offset < end) {
+			ensure(16);
+			int limit = Math.min(end, offset + (buffer.length - position - 1) / 3);
+			byte[] bytes = buffer;
+			int p = position;
+			if (surrogate == 0) {
+				while (offset < limit) {
+					char c = value.charAt(offset);
+					if (c >= 0x80) {
+						break;
+					}
+					bytes[p++] = (byte) c;
+					offset++;
+				}
+			}
+			position = p;
+			while (offset < limit) {
+				encode(value.charAt(offset++));
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (surrogate != 0) {
+				surrogate = 0;
+				ensure(1);
+				buffer[position++] = '?';
+			}
+			drain();
+			out.close();
+		} finally {
+			if (buffer != null) {
+				pool.release(buffer);
+				buffer = null;
+			}
+		}
+	}
+
+	public void release() {
+		if (buffer != null) {
+			pool.release(buffer);
+			buffer = null;
+		}
+		position = 0;
+		if (out instanceof Releasable) {
+			((Releasable) out).release();
+		}
+	}
+
+	/**
+	 * Encodes one char; the caller guarantees room for 4 bytes.
+	 */
+	private void encode(char c) {
+		byte[] bytes = buffer;
+		if (surrogate != 0) {
+			char high = surrogate;
+			surrogate = 0;
+			if (Character.isLowSurrogate(c)) {
+				int code = Character.toCodePoint(high, c);
+				bytes[position++] = (byte) (0xf0 | (code >> 18));
+				bytes[position++] = (byte) (0x80 | ((code >> 12) & 0x3f));
+				bytes[position++] = (byte) (0x80 | ((code >> 6) & 0x3f));
+				bytes[position++] = (byte) (0x80 | (code & 0x3f));
+				return;
+			}
+			bytes[position++] = '?';
+		}
+
+		if (c < 0x80) {
+			bytes[position++] = (byte) c;
+		} else if (c < 0x800) {
+			bytes[position++] = (byte) (0xc0 | (c >> 6));
+			bytes[position++] = (byte) (0x80 | (c & 0x3f));
+		} else if (Character.isHighSurrogate(c)) {
+			surrogate = c;
+		} else if (Character.isLowSurrogate(c)) {
+			bytes[position++] = '?';
+		} else {
+			bytes[position++] = (byte) (0xe0 | (c >> 12));
+			bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+			bytes[position++] = (byte) (0x80 | (c & 0x3f));
+		}
+	}
+
+	private void ensure(int room) throws IOException {
+		if (buffer == null) {
+			buffer = pool.borrow();
+		} else if (buffer.length - position < room) {
+			drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
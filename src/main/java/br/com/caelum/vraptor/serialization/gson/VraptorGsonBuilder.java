@@ -1,71 +1,43 @@
 package br.com.caelum.vraptor.serialization.gson;
 
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.Collection;
 
-import com.google.gson.ExclusionStrategy;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSerializer;
 
 /**
- * 
+ * Immutable pairing of the adapters with the engine. Everything that varies
+ * per serialization is given as {@link SerializationOptions}, so the same
+ * builder can be used by many serializations at once.
+ *
  * @author Renan Reis
  * @author Guilherme Mangabeira
  */
 
 public class VraptorGsonBuilder {
 
-	protected GsonBuilder builder = new GsonBuilder();
+	private final GsonSerializationEngine engine;
 
-	private boolean withoutRoot;
+	private final Collection<JsonSerializer<?>> serializers;
 
-	private String alias;
-
-	private Collection<JsonSerializer<?>> serializers;
-
-	public VraptorGsonBuilder(Collection<JsonSerializer<?>> serializers) {
+	public VraptorGsonBuilder(Collection<JsonSerializer<?>> serializers, GsonSerializationEngine engine) {
 		this.serializers = serializers;
+		this.engine = engine;
 	}
 
-	public boolean isWithoutRoot() {
-		return withoutRoot;
-	}
-
-	public void setWithoutRoot(boolean withoutRoot) {
-		this.withoutRoot = withoutRoot;
-	}
-
-	public String getAlias() {
-		return alias;
-	}
-
-	public void setAlias(String alias) {
-		this.alias = alias;
-	}
-
-	public void indented() {
-		builder.setPrettyPrinting();
+	public boolean hasAdapterFor(Class<?> type) {
+		return engine.hasAdapterFor(serializers, type);
 	}
 
-	public void setExclusionStrategies(ExclusionStrategy... strategies) {
-		builder.setExclusionStrategies(strategies);
+	public Gson create(SerializationOptions options) {
+		return create(options, new CacheCounter());
 	}
 
-	public Gson create() {
-		for (JsonSerializer<?> adapter : serializers) {
-			builder.registerTypeHierarchyAdapter(getAdapterType(adapter), adapter);
-		}
-
-		return builder.create();
-	}
-
-	private Class<?> getAdapterType(JsonSerializer<?> adapter) {
-		Type[] genericInterfaces = adapter.getClass().getGenericInterfaces();
-		ParameterizedType type = (ParameterizedType) genericInterfaces[0];
-		Type actualType = type.getActualTypeArguments()[0];
-
-		return (Class<?>) actualType;
+	/**
+	 * Same as {@link #create(SerializationOptions)}, counting the cache lookup
+	 * as a hit or a miss.
+	 */
+	public Gson create(SerializationOptions options, CacheCounter counter) {
+		return engine.gsonFor(counter, serializers, options.isIndented(), options.strategies());
 	}
-}
\ No newline at end of file
+}
@@ -4,43 +4,77 @@ import java.lang.reflect.Type;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 
 import br.com.caelum.vraptor.converter.ConversionError;
-import br.com.caelum.vraptor.core.Localization;
+import br.com.caelum.vraptor.deserialization.gson.DeserializationLocale;
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
 import br.com.caelum.vraptor.ioc.Component;
 
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 
+/**
+ * Reads ISO-8601 strings, epoch milliseconds given as JSON numbers and the
+ * shape written by CalendarSerializer without DateFormat, falling back to the
+ * short date format of the locale of the request, given by
+ * {@link DeserializationLocale}. A string of digits is never taken as epoch
+ * milliseconds.
+ */
 @Component
+@ApplicationScoped
 public class CalendarDeserializer implements JsonDeserializer<Calendar> {
 
-	private final Localization localization;
+	/**
+	 * DateFormat is not thread-safe, so each thread keeps one per locale.
+	 */
+	private static final ThreadLocal<Map<Locale, DateFormat>> FORMATS = new ThreadLocal<Map<Locale, DateFormat>>();
 
-	public CalendarDeserializer(Localization localization) {
-		this.localization = localization;
-	}
+	private final Calendar prototype = new GregorianCalendar();
 
 	public Calendar deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
 			throws JsonParseException {
 
+		Calendar calendar = (Calendar) prototype.clone();
+
+		if (json.isJsonObject()) {
+			JsonObject object = json.getAsJsonObject();
+			try {
+				calendar.setTimeInMillis(Long.parseLong(object.get("time").getAsString()));
+			} catch (RuntimeException e) {
+				throw new ConversionError("Impossível converter calendar");
+			}
+			if (object.has("timezone")) {
+				calendar.setTimeZone(TimeZone.getTimeZone(object.get("timezone").getAsString()));
+			}
+			return calendar;
+		}
+
+		if (json.isJsonPrimitive() && json.getAsJsonPrimitive().isNumber()) {
+			calendar.setTimeInMillis(json.getAsLong());
+			return calendar;
+		}
+
 		String value = json.getAsString();
 
-		Locale locale = localization.getLocale();
-		if (locale == null) {
-			locale = Locale.getDefault();
+		if (Iso8601.isIso(value)) {
+			try {
+				calendar.setTimeInMillis(Iso8601.parse(value, calendar.getTimeZone()));
+				return calendar;
+			} catch (IllegalArgumentException e) {
+				// not ISO after all, tries the locale format
+			}
 		}
 
-		DateFormat format = DateFormat.getDateInstance(DateFormat.SHORT, locale);
 		try {
-			Date date = format.parse(value);
-			Calendar calendar = new GregorianCalendar();
-			calendar.setTime(date);
+			calendar.setTime(formatFor(DeserializationLocale.current()).parse(value));
 			return calendar;
 		} catch (ParseException e) {
 			throw new ConversionError("Impossível converter calendar");
@@ -48,4 +82,19 @@ public class CalendarDeserializer implements JsonDeserializer<Calendar> {
 
 	}
 
+	private static DateFormat formatFor(Locale locale) {
+		Map<Locale, DateFormat> formats = FORMATS.get();
+		if (formats == null) {
+			formats = new HashMap<Locale, DateFormat>();
+			FORMATS.set(formats);
+		}
+
+		DateFormat format = formats.get(locale);
+		if (format == null) {
+			format = DateFormat.getDateInstance(DateFormat.SHORT, locale);
+			formats.put(locale, format);
+		}
+		return format;
+	}
+
 }
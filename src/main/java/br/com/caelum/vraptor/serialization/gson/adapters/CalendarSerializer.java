@@ -1,26 +1,53 @@
 package br.com.caelum.vraptor.serialization.gson.adapters;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.Calendar;
 
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
 import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.serialization.gson.GsonConfiguration;
+import br.com.caelum.vraptor.serialization.gson.TemporalFormat;
 
 import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
-
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes calendars straight to the JsonWriter, like XStream by default:
+ * {"time":"1346641200000","timezone":"America/Sao_Paulo"}
+ *
+ * @see GsonConfiguration#temporalFormat()
+ */
 @Component
-public class CalendarSerializer implements JsonSerializer<Calendar> {
+@ApplicationScoped
+public class CalendarSerializer extends TypeAdapter<Calendar> implements JsonSerializer<Calendar> {
+
+	private final TemporalFormat format;
+
+	public CalendarSerializer(GsonConfiguration configuration) {
+		this.format = configuration.temporalFormat();
+	}
 
 	public JsonElement serialize(Calendar calendar, Type typeOfSrc, JsonSerializationContext context) {
-		long timeInMillis = calendar.getTimeInMillis();
-		String timeZoneID = calendar.getTimeZone().getID();
+		return toJsonTree(calendar);
+	}
 
-		String json = "{\"time\" : \"%s\", \"timezone\" : \"%s\"}";
-		json = String.format(json, timeInMillis, timeZoneID);
+	@Override
+	public void write(JsonWriter out, Calendar calendar) throws IOException {
+		if (calendar == null) {
+			out.nullValue();
+			return;
+		}
+		Temporals.write(out, calendar.getTimeInMillis(), calendar.getTimeZone(), format);
+	}
 
-		return new JsonParser().parse(json).getAsJsonObject();
+	@Override
+	public Calendar read(JsonReader in) throws IOException {
+		return Temporals.read(in);
 	}
 
-}
\ No newline at end of file
+}
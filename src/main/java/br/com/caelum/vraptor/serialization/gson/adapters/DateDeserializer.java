@@ -0,0 +1,85 @@
+package br.com.caelum.vraptor.serialization.gson.adapters;
+
+import java.lang.reflect.Type;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+
+/**
+ * Reads back dates written by {@link DateSerializer} in any TemporalFormat,
+ * as the Date subclass asked for, such as Timestamp. Strings that are not
+ * ISO-8601 are read as Gson's default date format, which clients used before
+ * DateSerializer existed.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class DateDeserializer implements JsonDeserializer<Date> {
+
+	public Date deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
+			throws JsonParseException {
+		long millis = millisOf(json);
+
+		if (typeOfT == Timestamp.class) {
+			return new Timestamp(millis);
+		}
+		if (typeOfT == java.sql.Date.class) {
+			return new java.sql.Date(millis);
+		}
+		if (typeOfT == Time.class) {
+			return new Time(millis);
+		}
+		return new Date(millis);
+	}
+
+	private long millisOf(JsonElement json) {
+		String value;
+		try {
+			if (json.isJsonObject()) {
+				return json.getAsJsonObject().get("time").getAsLong();
+			}
+			if (json.getAsJsonPrimitive().isNumber()) {
+				return json.getAsLong();
+			}
+
+			value = json.getAsString();
+			if (Iso8601.isIso(value)) {
+				return Iso8601.parse(value, TimeZone.getDefault());
+			}
+		} catch (RuntimeException e) {
+			throw new JsonParseException("Unable to read a date from " + json, e);
+		}
+		return gsonDefault(value);
+	}
+
+	/**
+	 * Gson's default format, in US English or in the default locale. The
+	 * formats are created for each value, since only old clients send them.
+	 */
+	private static long gsonDefault(String value) {
+		try {
+			return DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT, Locale.US).parse(value)
+					.getTime();
+		} catch (ParseException e) {
+			try {
+				return DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT).parse(value).getTime();
+			} catch (ParseException notLocal) {
+				throw new JsonParseException("Unable to read a date from " + value, notLocal);
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package br.com.caelum.vraptor.serialization.gson.adapters;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.serialization.gson.GsonConfiguration;
+import br.com.caelum.vraptor.serialization.gson.TemporalFormat;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes dates and their java.sql subclasses in the same shape as calendars,
+ * in the default time zone, instead of Gson's locale dependent DateFormat.
+ * {@link DateDeserializer} reads them back.
+ *
+ * @see GsonConfiguration#temporalFormat()
+ */
+@Component
+@ApplicationScoped
+public class DateSerializer extends TypeAdapter<Date> implements JsonSerializer<Date> {
+
+	private final TemporalFormat format;
+
+	public DateSerializer(GsonConfiguration configuration) {
+		this.format = configuration.temporalFormat();
+	}
+
+	public JsonElement serialize(Date date, Type typeOfSrc, JsonSerializationContext context) {
+		return toJsonTree(date);
+	}
+
+	@Override
+	public void write(JsonWriter out, Date date) throws IOException {
+		if (date == null) {
+			out.nullValue();
+			return;
+		}
+		Temporals.write(out, date.getTime(), TimeZone.getDefault(), format);
+	}
+
+	@Override
+	public Date read(JsonReader in) throws IOException {
+		Calendar calendar = Temporals.read(in);
+		return calendar == null ? null : calendar.getTime();
+	}
+
+}
@@ -4,19 +4,23 @@ import java.lang.reflect.Type;
 
 import org.hibernate.proxy.HibernateProxy;
 
-import br.com.caelum.vraptor.ioc.Component;
-
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
-@Component
+/**
+ * Serializes Hibernate proxies as their implementation.
+ *
+ * @deprecated no longer registered as a component, proxies are written by
+ *             {@link HibernateProxyTypeAdapterFactory}. Will be removed in the
+ *             next release.
+ */
+@Deprecated
 public class HibernateProxySerializer implements JsonSerializer<HibernateProxy> {
 
 	public JsonElement serialize(HibernateProxy proxyObj, Type type, JsonSerializationContext ctx) {
 		Object deProxied = proxyObj.getHibernateLazyInitializer().getImplementation();
-		return new Gson().toJsonTree(deProxied);
+		return ctx.serialize(deProxied);
 	}
 
-}
\ No newline at end of file
+}
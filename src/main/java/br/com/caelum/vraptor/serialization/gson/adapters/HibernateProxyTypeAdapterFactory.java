@@ -0,0 +1,77 @@
+package br.com.caelum.vraptor.serialization.gson.adapters;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.proxy.HibernateProxy;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes Hibernate proxies as their implementation, using the adapters of the
+ * Gson doing the serialization, so registered adapters, exclusions and
+ * indentation apply to proxied entities as well. Reading a proxy type is left
+ * to the adapter Gson would use without this factory.
+ */
+public class HibernateProxyTypeAdapterFactory implements TypeAdapterFactory {
+
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if (!HibernateProxy.class.isAssignableFrom(type.getRawType())) {
+			return null;
+		}
+
+		TypeAdapter<Object> delegate = (TypeAdapter<Object>) gson.getDelegateAdapter(this, type);
+		return (TypeAdapter<T>) new ProxyAdapter(gson, delegate);
+	}
+
+	private static class ProxyAdapter extends TypeAdapter<HibernateProxy> {
+
+		private final Gson gson;
+
+		private final TypeAdapter<Object> delegate;
+
+		private final ConcurrentMap<Class<?>, TypeAdapter<Object>> implementations = new ConcurrentHashMap<Class<?>, TypeAdapter<Object>>();
+
+		ProxyAdapter(Gson gson, TypeAdapter<Object> delegate) {
+			this.gson = gson;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void write(JsonWriter out, HibernateProxy proxy) throws IOException {
+			if (proxy == null) {
+				out.nullValue();
+				return;
+			}
+
+			Object implementation = proxy.getHibernateLazyInitializer().getImplementation();
+			if (implementation instanceof HibernateProxy) {
+				delegate.write(out, implementation);
+			} else {
+				adapterFor(implementation.getClass()).write(out, implementation);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private TypeAdapter<Object> adapterFor(Class<?> type) {
+			TypeAdapter<Object> adapter = implementations.get(type);
+			if (adapter == null) {
+				adapter = (TypeAdapter<Object>) gson.getAdapter(type);
+				implementations.putIfAbsent(type, adapter);
+			}
+			return adapter;
+		}
+
+		@Override
+		public HibernateProxy read(JsonReader in) throws IOException {
+			return (HibernateProxy) delegate.read(in);
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package br.com.caelum.vraptor.serialization.gson.adapters;
+
+import java.util.TimeZone;
+
+/**
+ * Hand written ISO-8601 formatting and parsing, without DateFormat or
+ * Calendar. Dates are proleptic Gregorian, as in java.time.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class Iso8601 {
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+	/**
+	 * A signed year of up to nine digits, as far as a long of millis goes,
+	 * then -MM-ddTHH:mm:ss.SSS and +HH:mm.
+	 */
+	private static final int MAX_LENGTH = 10 + 20 + 6;
+
+	private Iso8601() {
+	}
+
+	/**
+	 * Formats as yyyy-MM-ddTHH:mm:ss.SSS followed by Z or the offset of the
+	 * zone at that instant. The digits are written straight into the chars of
+	 * the returned String, the only form JsonWriter takes a string value in.
+	 */
+	static String format(long millis, TimeZone zone) {
+		int offset = zone.getOffset(millis);
+		long local = millis + offset;
+		long days = floorDiv(local, MILLIS_PER_DAY);
+		int millisOfDay = (int) (local - days * MILLIS_PER_DAY);
+
+		long z = days + 719468;
+		long era = floorDiv(z, 146097);
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+		int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+		char[] out = new char[MAX_LENGTH];
+		int position;
+		if (year < 0 || year > 9999) {
+			String digits = Long.toString(year);
+			digits.getChars(0, digits.length(), out, 0);
+			position = digits.length();
+		} else {
+			position = pad(out, 0, (int) year, 4);
+		}
+		out[position++] = '-';
+		position = pad(out, position, month, 2);
+		out[position++] = '-';
+		position = pad(out, position, day, 2);
+		out[position++] = 'T';
+		position = pad(out, position, millisOfDay / 3600000, 2);
+		out[position++] = ':';
+		position = pad(out, position, millisOfDay / 60000 % 60, 2);
+		out[position++] = ':';
+		position = pad(out, position, millisOfDay / 1000 % 60, 2);
+		out[position++] = '.';
+		position = pad(out, position, millisOfDay % 1000, 3);
+
+		if (offset == 0) {
+			out[position++] = 'Z';
+		} else {
+			int minutes = Math.abs(offset) / 60000;
+			out[position++] = offset < 0 ? '-' : '+';
+			position = pad(out, position, minutes / 60, 2);
+			out[position++] = ':';
+			position = pad(out, position, minutes % 60, 2);
+		}
+		return new String(out, 0, position);
+	}
+
+	/**
+	 * Whether the value starts like an ISO-8601 date (yyyy-MM-dd).
+	 */
+	static boolean isIso(String value) {
+		return value.length() >= 10 && value.charAt(4) == '-' && value.charAt(7) == '-'
+				&& isDigit(value.charAt(0)) && isDigit(value.charAt(9));
+	}
+
+	/**
+	 * Parses yyyy-MM-dd, optionally followed by T or a space and
+	 * HH:mm[:ss[.fraction]], and by Z or an offset (+HH:mm, +HHmm or +HH).
+	 * Values without an offset are local to the given zone.
+	 *
+	 * @throws IllegalArgumentException if the value is not in that form.
+	 */
+	static long parse(String value, TimeZone zone) {
+		Cursor cursor = new Cursor(value);
+		int year = cursor.digits(4);
+		cursor.expect('-');
+		int month = cursor.digits(2);
+		cursor.expect('-');
+		int day = cursor.digits(2);
+		if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+			throw cursor.invalid();
+		}
+
+		int hour = 0, minute = 0, second = 0, millis = 0;
+		if (cursor.next('T') || cursor.next(' ')) {
+			hour = cursor.digits(2);
+			cursor.expect(':');
+			minute = cursor.digits(2);
+			if (cursor.next(':')) {
+				second = cursor.digits(2);
+				if (cursor.next('.') || cursor.next(',')) {
+					millis = cursor.fraction();
+				}
+			}
+			if (hour > 23 || minute > 59 || second > 59) {
+				throw cursor.invalid();
+			}
+		}
+
+		long local = daysFromCivil(year, month, day) * MILLIS_PER_DAY
+				+ ((hour * 60L + minute) * 60 + second) * 1000 + millis;
+
+		if (cursor.atEnd()) {
+			return local - zone.getOffset(local - zone.getOffset(local));
+		}
+		if (cursor.next('Z')) {
+			cursor.expectEnd();
+			return local;
+		}
+
+		int sign = cursor.next('+') ? 1 : cursor.next('-') ? -1 : 0;
+		if (sign == 0) {
+			throw cursor.invalid();
+		}
+		int offsetHours = cursor.digits(2);
+		int offsetMinutes = 0;
+		if (!cursor.atEnd()) {
+			cursor.next(':');
+			offsetMinutes = cursor.digits(2);
+		}
+		cursor.expectEnd();
+		return local - sign * (offsetHours * 60L + offsetMinutes) * MILLIS_PER_MINUTE;
+	}
+
+	private static long daysFromCivil(int year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = floorDiv(y, 400);
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		if (month == 2) {
+			return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+		}
+		return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return (x % y != 0 && (x ^ y) < 0) ? q - 1 : q;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Writes value as width digits, zero padded, returning the position after
+	 * them.
+	 */
+	private static int pad(char[] out, int position, int value, int width) {
+		for (int i = position + width - 1; i >= position; i--) {
+			out[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return position + width;
+	}
+
+	private static final class Cursor {
+
+		private final String value;
+
+		private int position;
+
+		Cursor(String value) {
+			this.value = value;
+		}
+
+		int digits(int count) {
+			if (position + count > value.length()) {
+				throw invalid();
+			}
+			int result = 0;
+			for (int i = 0; i < count; i++) {
+				char c = value.charAt(position++);
+				if (!isDigit(c)) {
+					throw invalid();
+				}
+				result = result * 10 + (c - '0');
+			}
+			return result;
+		}
+
+		/**
+		 * Milliseconds of a fraction of second of any precision.
+		 */
+		int fraction() {
+			int start = position;
+			int result = 0;
+			while (position < value.length() && isDigit(value.charAt(position))) {
+				if (position - start < 3) {
+					result = result * 10 + (value.charAt(position) - '0');
+				}
+				position++;
+			}
+			int length = position - start;
+			if (length == 0) {
+				throw invalid();
+			}
+			for (int i = length; i < 3; i++) {
+				result *= 10;
+			}
+			return result;
+		}
+
+		boolean next(char c) {
+			if (position < value.length() && value.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		void expect(char c) {
+			if (!next(c)) {
+				throw invalid();
+			}
+		}
+
+		boolean atEnd() {
+			return position == value.length();
+		}
+
+		void expectEnd() {
+			if (!atEnd()) {
+				throw invalid();
+			}
+		}
+
+		IllegalArgumentException invalid() {
+			return new IllegalArgumentException("Not an ISO-8601 date: " + value);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package br.com.caelum.vraptor.serialization.gson.adapters;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import br.com.caelum.vraptor.serialization.gson.TemporalFormat;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming representation of instants shared by the temporal adapters.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class Temporals {
+
+	private Temporals() {
+	}
+
+	static void write(JsonWriter out, long millis, TimeZone zone, TemporalFormat format) throws IOException {
+		switch (format) {
+		case EPOCH_MILLIS:
+			out.value(millis);
+			break;
+		case ISO_8601:
+			out.value(Iso8601.format(millis, zone));
+			break;
+		default:
+			out.beginObject();
+			out.name("time").value(Long.toString(millis));
+			out.name("timezone").value(zone.getID());
+			out.endObject();
+		}
+	}
+
+	/**
+	 * Reads any of the shapes written by {@link #write}, whatever the
+	 * configured format.
+	 */
+	static Calendar read(JsonReader in) throws IOException {
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+
+		Calendar calendar = new GregorianCalendar();
+		try {
+			if (token == JsonToken.NUMBER) {
+				calendar.setTimeInMillis(in.nextLong());
+			} else if (token == JsonToken.STRING) {
+				calendar.setTimeInMillis(Iso8601.parse(in.nextString(), calendar.getTimeZone()));
+			} else {
+				in.beginObject();
+				while (in.hasNext()) {
+					String name = in.nextName();
+					if ("time".equals(name)) {
+						calendar.setTimeInMillis(Long.parseLong(in.nextString()));
+					} else if ("timezone".equals(name)) {
+						calendar.setTimeZone(TimeZone.getTimeZone(in.nextString()));
+					} else {
+						in.skipValue();
+					}
+				}
+				in.endObject();
+			}
+		} catch (IllegalArgumentException e) {
+			throw new JsonSyntaxException(e);
+		}
+		return calendar;
+	}
+}
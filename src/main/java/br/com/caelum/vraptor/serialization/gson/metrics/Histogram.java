@@ -0,0 +1,56 @@
+package br.com.caelum.vraptor.serialization.gson.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock and allocation free latency histogram with power of two buckets of
+ * microseconds: bucket i counts the values below 2^i microseconds.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class Histogram {
+
+	static final int BUCKETS = 32;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	void record(long nanos) {
+		long micros = nanos / 1000;
+		int bucket = 64 - Long.numberOfLeadingZeros(micros);
+		counts.incrementAndGet(bucket < BUCKETS ? bucket : BUCKETS - 1);
+	}
+
+	long[] snapshot() {
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Upper bound, in microseconds, of the bucket holding the given fraction
+	 * of the values, or 0 when empty.
+	 */
+	long percentile(double fraction) {
+		long[] snapshot = snapshot();
+		long total = 0;
+		for (long count : snapshot) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long target = (long) Math.ceil(total * fraction);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= target) {
+				return 1L << i;
+			}
+		}
+		return 1L << (BUCKETS - 1);
+	}
+}
@@ -0,0 +1,126 @@
+package br.com.caelum.vraptor.serialization.gson.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+
+/**
+ * Publishes a ResourceMethodMetrics MBean for each resource method, named
+ * br.com.caelum.vraptor.gson:context="/app",type=ResourceMethod,name="com.example.DogController.bark(com.example.Dog)".
+ * MBeans are registered the first time a method serializes or deserializes
+ * JSON, and unregistered when the application stops.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class JmxMetricsListener implements JsonMetricsListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(JmxMetricsListener.class);
+
+	static final String DOMAIN = "br.com.caelum.vraptor.gson";
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	private final ConcurrentMap<Method, ResourceMethodMetrics> metrics = new ConcurrentHashMap<Method, ResourceMethodMetrics>();
+
+	private final ConcurrentMap<Method, ObjectName> names = new ConcurrentHashMap<Method, ObjectName>();
+
+	private final String context;
+
+	public JmxMetricsListener(ServletContext servletContext) {
+		String path = servletContext.getContextPath();
+		this.context = path == null || path.length() == 0 ? "/" : path;
+	}
+
+	public void serialized(ResourceMethod method, long nanos, long written, long elements, int cacheHits,
+			int cacheMisses) {
+		metricsFor(method).serialized(nanos, written, elements, cacheHits, cacheMisses);
+	}
+
+	public void deserialized(ResourceMethod method, long nanos, long read, int cacheHits, int cacheMisses) {
+		metricsFor(method).deserialized(nanos, read, cacheHits, cacheMisses);
+	}
+
+	public ResourceMethodMetrics metricsFor(ResourceMethod method) {
+		Method key = method.getMethod();
+		ResourceMethodMetrics found = metrics.get(key);
+		if (found != null) {
+			return found;
+		}
+
+		ResourceMethodMetrics created = new ResourceMethodMetrics();
+		found = metrics.putIfAbsent(key, created);
+		if (found != null) {
+			return found;
+		}
+
+		register(key, created);
+		return created;
+	}
+
+	@PreDestroy
+	public void unregister() {
+		for (ObjectName name : names.values()) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException e) {
+				logger.debug("Unable to unregister " + name, e);
+			}
+		}
+		names.clear();
+	}
+
+	private void register(Method method, ResourceMethodMetrics mbean) {
+		try {
+			ObjectName name = nameFor(method);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(mbean, name);
+			names.put(method, name);
+		} catch (JMException e) {
+			logger.warn("Unable to publish JSON metrics of " + method, e);
+		}
+	}
+
+	ObjectName nameFor(Method method) throws JMException {
+		StringBuilder name = new StringBuilder(nameOf(method.getDeclaringClass()))
+				.append('.').append(method.getName()).append('(');
+		Class<?>[] types = method.getParameterTypes();
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) {
+				name.append(',');
+			}
+			name.append(nameOf(types[i]));
+		}
+		name.append(')');
+
+		return new ObjectName(DOMAIN + ":context=" + ObjectName.quote(context) + ",type=ResourceMethod,name="
+				+ ObjectName.quote(name.toString()));
+	}
+
+	/**
+	 * The fully qualified name, so methods of classes with the same simple
+	 * name in different packages get different MBeans.
+	 */
+	private static String nameOf(Class<?> type) {
+		String name = type.getCanonicalName();
+		return name == null ? type.getName() : name;
+	}
+}
@@ -0,0 +1,51 @@
+package br.com.caelum.vraptor.serialization.gson.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Component;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+
+/**
+ * Dispatches the measurements of serializations and deserializations to all
+ * JsonMetricsListener components.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@Component
+@ApplicationScoped
+public class JsonMetrics {
+
+	/**
+	 * Records nothing, for serializations created outside the container.
+	 */
+	public static final JsonMetrics NONE = new JsonMetrics(Collections.<JsonMetricsListener> emptyList());
+
+	private final JsonMetricsListener[] listeners;
+
+	public JsonMetrics(Collection<JsonMetricsListener> listeners) {
+		this.listeners = listeners.toArray(new JsonMetricsListener[listeners.size()]);
+	}
+
+	/**
+	 * Whether there is someone listening, so that measuring can be skipped.
+	 */
+	public boolean isEnabled() {
+		return listeners.length > 0;
+	}
+
+	public void serialized(ResourceMethod method, long nanos, long written, long elements, int cacheHits,
+			int cacheMisses) {
+		for (JsonMetricsListener listener : listeners) {
+			listener.serialized(method, nanos, written, elements, cacheHits, cacheMisses);
+		}
+	}
+
+	public void deserialized(ResourceMethod method, long nanos, long read, int cacheHits, int cacheMisses) {
+		for (JsonMetricsListener listener : listeners) {
+			listener.deserialized(method, nanos, read, cacheHits, cacheMisses);
+		}
+	}
+}
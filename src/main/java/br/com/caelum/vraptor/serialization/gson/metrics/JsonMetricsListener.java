@@ -0,0 +1,37 @@
+package br.com.caelum.vraptor.serialization.gson.metrics;
+
+import br.com.caelum.vraptor.resource.ResourceMethod;
+
+/**
+ * Receives a call for each serialization and deserialization of a resource
+ * method. Implement it and annotate with @Component and @ApplicationScoped to
+ * publish the numbers to other registries.
+ *
+ * Listeners are called in the request thread, so they must be thread-safe and
+ * fast.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public interface JsonMetricsListener {
+
+	/**
+	 * @param nanos time spent serializing
+	 * @param written bytes written to the response OutputStream, after
+	 *            compression, or -1 when the response was written through its
+	 *            Writer
+	 * @param elements elements written for collections and iterators, or -1
+	 * @param cacheHits Gson instances found in the cache
+	 * @param cacheMisses Gson instances compiled
+	 */
+	void serialized(ResourceMethod method, long nanos, long written, long elements, int cacheHits, int cacheMisses);
+
+	/**
+	 * @param nanos time spent reading the body
+	 * @param read bytes read from the body
+	 * @param cacheHits Gson instances found in the cache
+	 * @param cacheMisses Gson instances compiled
+	 */
+	void deserialized(ResourceMethod method, long nanos, long read, int cacheHits, int cacheMisses);
+
+}
@@ -0,0 +1,124 @@
+package br.com.caelum.vraptor.serialization.gson.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a resource method, updated without locks or allocation.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public class ResourceMethodMetrics implements ResourceMethodMetricsMBean {
+
+	private final AtomicLong serializations = new AtomicLong();
+
+	private final AtomicLong serializationNanos = new AtomicLong();
+
+	private final Histogram serializationLatency = new Histogram();
+
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	private final AtomicLong elementsWritten = new AtomicLong();
+
+	private final AtomicLong deserializations = new AtomicLong();
+
+	private final AtomicLong deserializationNanos = new AtomicLong();
+
+	private final Histogram deserializationLatency = new Histogram();
+
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	private final AtomicLong cacheMisses = new AtomicLong();
+
+	void serialized(long nanos, long written, long elements, int hits, int misses) {
+		serializations.incrementAndGet();
+		serializationNanos.addAndGet(nanos);
+		serializationLatency.record(nanos);
+		if (written > 0) {
+			bytesWritten.addAndGet(written);
+		}
+		if (elements > 0) {
+			elementsWritten.addAndGet(elements);
+		}
+		cache(hits, misses);
+	}
+
+	void deserialized(long nanos, long read, int hits, int misses) {
+		deserializations.incrementAndGet();
+		deserializationNanos.addAndGet(nanos);
+		deserializationLatency.record(nanos);
+		bytesRead.addAndGet(read);
+		cache(hits, misses);
+	}
+
+	private void cache(int hits, int misses) {
+		if (hits > 0) {
+			cacheHits.addAndGet(hits);
+		}
+		if (misses > 0) {
+			cacheMisses.addAndGet(misses);
+		}
+	}
+
+	public long getSerializations() {
+		return serializations.get();
+	}
+
+	public long getSerializationTotalMicros() {
+		return serializationNanos.get() / 1000;
+	}
+
+	public long getSerializationMedianMicros() {
+		return serializationLatency.percentile(0.5);
+	}
+
+	public long getSerialization99thPercentileMicros() {
+		return serializationLatency.percentile(0.99);
+	}
+
+	public long[] getSerializationHistogram() {
+		return serializationLatency.snapshot();
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	public long getElementsWritten() {
+		return elementsWritten.get();
+	}
+
+	public long getDeserializations() {
+		return deserializations.get();
+	}
+
+	public long getDeserializationTotalMicros() {
+		return deserializationNanos.get() / 1000;
+	}
+
+	public long getDeserializationMedianMicros() {
+		return deserializationLatency.percentile(0.5);
+	}
+
+	public long getDeserialization99thPercentileMicros() {
+		return deserializationLatency.percentile(0.99);
+	}
+
+	public long[] getDeserializationHistogram() {
+		return deserializationLatency.snapshot();
+	}
+
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+}
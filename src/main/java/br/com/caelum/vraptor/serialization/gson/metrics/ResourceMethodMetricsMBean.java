@@ -0,0 +1,48 @@
+package br.com.caelum.vraptor.serialization.gson.metrics;
+
+/**
+ * JSON work of a resource method. Latencies are in microseconds, rounded up
+ * to a power of two.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public interface ResourceMethodMetricsMBean {
+
+	long getSerializations();
+
+	long getSerializationTotalMicros();
+
+	long getSerializationMedianMicros();
+
+	long getSerialization99thPercentileMicros();
+
+	/**
+	 * Counts of serializations below 1, 2, 4, ... 2^31 microseconds.
+	 */
+	long[] getSerializationHistogram();
+
+	/**
+	 * Bytes sent to the client, after compression.
+	 */
+	long getBytesWritten();
+
+	long getElementsWritten();
+
+	long getDeserializations();
+
+	long getDeserializationTotalMicros();
+
+	long getDeserializationMedianMicros();
+
+	long getDeserialization99thPercentileMicros();
+
+	long[] getDeserializationHistogram();
+
+	long getBytesRead();
+
+	long getCacheHits();
+
+	long getCacheMisses();
+
+}
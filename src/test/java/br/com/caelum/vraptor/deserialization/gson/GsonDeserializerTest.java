@@ -3,30 +3,65 @@ package br.com.caelum.vraptor.deserialization.gson;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import br.com.caelum.vraptor.converter.ConversionError;
 import br.com.caelum.vraptor.core.Localization;
+import br.com.caelum.vraptor.deserialization.gson.BodyLimits.Limit;
 import br.com.caelum.vraptor.http.ParameterNameProvider;
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Container;
 import br.com.caelum.vraptor.resource.DefaultResourceClass;
 import br.com.caelum.vraptor.resource.DefaultResourceMethod;
 import br.com.caelum.vraptor.resource.ResourceMethod;
-
+import br.com.caelum.vraptor.serialization.gson.DefaultGsonConfiguration;
+import br.com.caelum.vraptor.serialization.gson.GsonAdapters;
+import br.com.caelum.vraptor.serialization.gson.TemporalFormat;
+import br.com.caelum.vraptor.serialization.gson.adapters.CalendarDeserializer;
+import br.com.caelum.vraptor.serialization.gson.adapters.DateDeserializer;
+import br.com.caelum.vraptor.serialization.gson.adapters.DateSerializer;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetricsListener;
+import br.com.caelum.vraptor.view.ResultException;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 public class GsonDeserializerTest {
 
@@ -37,6 +72,13 @@ public class GsonDeserializerTest {
 	private ResourceMethod jump;
 	private DefaultResourceMethod woof;
 	private DefaultResourceMethod dropDead;
+	private DefaultResourceMethod adopt;
+	private DefaultResourceMethod adoptAll;
+	private DefaultResourceMethod register;
+	private GsonDeserializationEngine engine;
+	private HttpServletRequest request;
+	private JsonMetrics metrics;
+	private BodyLimits limits;
 
 	@Before
 	public void setUp() throws Exception {
@@ -45,7 +87,12 @@ public class GsonDeserializerTest {
 
 		when(localization.getLocale()).thenReturn(new Locale("pt", "BR"));
 
-		deserializer = new GsonDeserialization(provider, Collections.<JsonDeserializer<?>> emptyList());
+		request = mock(HttpServletRequest.class);
+		metrics = JsonMetrics.NONE;
+		limits = new BodyLimits(new DefaultGsonConfiguration(), mock(ServletContext.class));
+		engine = new GsonDeserializationEngine(new DefaultGsonConfiguration(), new GsonAdapters(mock(Container.class)));
+		deserializer = new GsonDeserialization(provider, Collections.<JsonDeserializer<?>> emptyList(), localization,
+				engine, request, metrics, limits);
 		DefaultResourceClass resourceClass = new DefaultResourceClass(DogController.class);
 
 		woof = new DefaultResourceMethod(resourceClass, DogController.class.getDeclaredMethod("woof"));
@@ -54,6 +101,17 @@ public class GsonDeserializerTest {
 				Integer.class));
 		dropDead = new DefaultResourceMethod(resourceClass, DogController.class.getDeclaredMethod("dropDead",
 				Integer.class, Dog.class));
+		adopt = new DefaultResourceMethod(resourceClass, DogController.class.getDeclaredMethod("adopt", Dog.class,
+				Calendar.class));
+		adoptAll = new DefaultResourceMethod(resourceClass, DogController.class.getDeclaredMethod("adoptAll",
+				List.class));
+		register = new DefaultResourceMethod(resourceClass, DogController.class.getDeclaredMethod("register",
+				Iterator.class));
+	}
+
+	@After
+	public void tearDown() {
+		limits.unregister();
 	}
 
 	static class Dog {
@@ -61,6 +119,11 @@ public class GsonDeserializerTest {
 		private Integer age;
 	}
 
+	static class Visit {
+		private Date day;
+		private Timestamp recorded;
+	}
+
 	static class DogController {
 
 		public void woof() {
@@ -75,6 +138,19 @@ public class GsonDeserializerTest {
 		public void dropDead(Integer times, Dog dog) {
 		}
 
+		public void adopt(Dog dog, Calendar since) {
+		}
+
+		@WithoutRoot
+		public void adoptAll(List<Dog> dogs) {
+		}
+
+		public void register(Iterator<Dog> dogs) {
+		}
+
+		public void visit(Visit visit) {
+		}
+
 	}
 
 	private class DogDeserializer implements JsonDeserializer<Dog> {
@@ -90,6 +166,71 @@ public class GsonDeserializerTest {
 
 	}
 
+	@Test
+	public void shouldReadBackTheDatesDateSerializerWrites() throws Exception {
+		ResourceMethod visit = new DefaultResourceMethod(new DefaultResourceClass(DogController.class),
+				DogController.class.getDeclaredMethod("visit", Visit.class));
+		when(provider.parameterNamesFor(visit.getMethod())).thenReturn(new String[] { "visit" });
+		deserializer = new GsonDeserialization(provider, Arrays.<JsonDeserializer<?>> asList(new DateDeserializer()),
+				localization, engine, request, metrics, limits);
+
+		Visit written = new Visit();
+		written.day = new Date(1346641200000L);
+		written.recorded = new Timestamp(1346641234567L);
+		for (final TemporalFormat format : TemporalFormat.values()) {
+			Gson gson = new GsonBuilder().registerTypeHierarchyAdapter(Date.class,
+					new DateSerializer(new DefaultGsonConfiguration() {
+						@Override
+						public TemporalFormat temporalFormat() {
+							return format;
+						}
+					})).create();
+			String json = "{\"visit\":" + gson.toJson(written) + "}";
+
+			Visit read = (Visit) deserializer.deserialize(new ByteArrayInputStream(json.getBytes()), visit)[0];
+
+			assertThat(json, read.day, is(written.day));
+			assertThat(json, read.recorded, is(instanceOf(Timestamp.class)));
+			assertThat(json, read.recorded.getTime(), is(written.recorded.getTime()));
+		}
+	}
+
+	@Test
+	public void shouldReadDatesInGsonDefaultFormat() throws Exception {
+		ResourceMethod visit = new DefaultResourceMethod(new DefaultResourceClass(DogController.class),
+				DogController.class.getDeclaredMethod("visit", Visit.class));
+		when(provider.parameterNamesFor(visit.getMethod())).thenReturn(new String[] { "visit" });
+		deserializer = new GsonDeserialization(provider, Arrays.<JsonDeserializer<?>> asList(new DateDeserializer()),
+				localization, engine, request, metrics, limits);
+		Visit written = new Visit();
+		written.day = new Date(1346641200000L);
+
+		Visit read = (Visit) deserializer.deserialize(new ByteArrayInputStream(("{\"visit\":"
+				+ new Gson().toJson(written) + "}").getBytes()), visit)[0];
+
+		assertThat(read.day, is(written.day));
+	}
+
+	static class CrudController<T> {
+		public void saveAll(List<T> items) {
+		}
+	}
+
+	static class DogCrudController extends CrudController<Dog> {
+	}
+
+	@Test
+	public void shouldResolveTypeVariablesAgainstTheController() throws Exception {
+		ResourceMethod saveAll = new DefaultResourceMethod(new DefaultResourceClass(DogCrudController.class),
+				CrudController.class.getDeclaredMethod("saveAll", List.class));
+		when(provider.parameterNamesFor(saveAll.getMethod())).thenReturn(new String[] { "items" });
+
+		List<?> dogs = (List<?>) deserializer.deserialize(new ByteArrayInputStream(
+				"{'items':[{'name':'Brutus'}]}".getBytes()), saveAll)[0];
+
+		assertThat(((Dog) dogs.get(0)).name, is("Brutus"));
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void shouldNotAcceptMethodsWithoutArguments() throws Exception {
 		deserializer.deserialize(new ByteArrayInputStream(new byte[0]), woof);
@@ -116,7 +257,7 @@ public class GsonDeserializerTest {
 		List<JsonDeserializer<?>> deserializers = new ArrayList<JsonDeserializer<?>>();
 		deserializers.add(new DogDeserializer());
 
-		deserializer = new GsonDeserialization(provider, deserializers);
+		deserializer = new GsonDeserialization(provider, deserializers, localization, engine, request, metrics, limits);
 
 		InputStream stream = new ByteArrayInputStream("{'dog':{'name':'Renan Reis','age':'0'}}".getBytes());
 
@@ -177,4 +318,296 @@ public class GsonDeserializerTest {
 		assertThat(dog.age, is(7));
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void shouldReuseGsonForEveryLocale() throws Exception {
+		when(provider.parameterNamesFor(bark.getMethod())).thenReturn(new String[] { "dog" });
+
+		deserializer.deserialize(new ByteArrayInputStream("{'dog':{'name':'Brutus'}}".getBytes()), bark);
+		deserializer.deserialize(new ByteArrayInputStream("{'dog':{'name':'Rex'}}".getBytes()), bark);
+
+		when(localization.getLocale()).thenReturn(Locale.US);
+		deserializer.deserialize(new ByteArrayInputStream("{'dog':{'name':'Max'}}".getBytes()), bark);
+
+		assertThat(engine.getMissCount(), is(1L));
+		assertThat(engine.getHitCount(), is(2L));
+	}
+
+	@Test
+	public void shouldReadLocaleDatesWithTheLocaleOfEachRequestFromTheSameGson() throws Exception {
+		List<JsonDeserializer<?>> deserializers = new ArrayList<JsonDeserializer<?>>();
+		deserializers.add(new CalendarDeserializer());
+		deserializer = new GsonDeserialization(provider, deserializers, localization, engine, request, metrics, limits);
+		when(provider.parameterNamesFor(adopt.getMethod())).thenReturn(new String[] { "dog", "since" });
+
+		Object[] brazilian = deserializer.deserialize(new ByteArrayInputStream("{'since':'03/09/2012'}".getBytes()),
+				adopt);
+		when(localization.getLocale()).thenReturn(Locale.US);
+		Object[] american = deserializer.deserialize(new ByteArrayInputStream("{'since':'03/09/2012'}".getBytes()),
+				adopt);
+
+		assertThat(((Calendar) brazilian[1]).getTimeInMillis(), is(new GregorianCalendar(2012, 8, 3)
+				.getTimeInMillis()));
+		assertThat(((Calendar) american[1]).getTimeInMillis(), is(new GregorianCalendar(2012, 2, 9)
+				.getTimeInMillis()));
+		assertThat(engine.getMissCount(), is(1L));
+	}
+
+	@Test
+	public void shouldSkipKeysThatAreNotParameters() throws Exception {
+		InputStream stream = new ByteArrayInputStream(
+				"{'owner':{'name':'Renan','pets':[{'name':'Rex'}]},'dog':{'name':'Brutus','age':7},'extra':[1,2]}"
+						.getBytes());
+
+		when(provider.parameterNamesFor(bark.getMethod())).thenReturn(new String[] { "dog" });
+
+		Object[] deserialized = deserializer.deserialize(stream, bark);
+
+		Dog dog = (Dog) deserialized[0];
+		assertThat(dog.name, is("Brutus"));
+		assertThat(dog.age, is(7));
+	}
+
+	@Test
+	public void shouldReadTheBodyUsingTheRequestCharset() throws Exception {
+		InputStream stream = new ByteArrayInputStream("{'dog':{'name':'Jo\u00e3o'}}".getBytes("ISO-8859-1"));
+
+		when(request.getCharacterEncoding()).thenReturn("ISO-8859-1");
+		when(provider.parameterNamesFor(bark.getMethod())).thenReturn(new String[] { "dog" });
+
+		Object[] deserialized = deserializer.deserialize(stream, bark);
+
+		assertThat(((Dog) deserialized[0]).name, is("Jo\u00e3o"));
+	}
+
+	@Test
+	public void shouldReadCalendarsAsIsoEpochMillisOrLocaleShortDates() throws Exception {
+		List<JsonDeserializer<?>> deserializers = new ArrayList<JsonDeserializer<?>>();
+		deserializers.add(new CalendarDeserializer());
+		deserializer = new GsonDeserialization(provider, deserializers, localization, engine, request, metrics, limits);
+
+		when(provider.parameterNamesFor(adopt.getMethod())).thenReturn(new String[] { "dog", "since" });
+
+		Calendar expected = new GregorianCalendar(2012, 8, 3);
+		String[] bodies = { "{'since':'03/09/2012'}", "{'since':'2012-09-03'}",
+				"{'since':" + expected.getTimeInMillis() + "}",
+				"{'since':{'time':'" + expected.getTimeInMillis() + "','timezone':'UTC'}}" };
+
+		for (String body : bodies) {
+			Object[] deserialized = deserializer.deserialize(new ByteArrayInputStream(body.getBytes()), adopt);
+			assertThat(body, ((Calendar) deserialized[1]).getTimeInMillis(), is(expected.getTimeInMillis()));
+		}
+	}
+
+	@Test(expected = ConversionError.class)
+	public void shouldNotReadStringsOfDigitsAsEpochMillis() throws Exception {
+		List<JsonDeserializer<?>> deserializers = new ArrayList<JsonDeserializer<?>>();
+		deserializers.add(new CalendarDeserializer());
+		deserializer = new GsonDeserialization(provider, deserializers, localization, engine, request, metrics, limits);
+
+		when(provider.parameterNamesFor(adopt.getMethod())).thenReturn(new String[] { "dog", "since" });
+
+		deserializer.deserialize(new ByteArrayInputStream("{'since':'20120903'}".getBytes()), adopt);
+	}
+
+	@Test
+	public void shouldBindABareArrayToTheGenericTypeOfAWithoutRootParameter() throws Exception {
+		InputStream stream = new ByteArrayInputStream("[{'name':'Brutus','age':7},{'name':'Rex'}]".getBytes());
+
+		Object[] deserialized = deserializer.deserialize(stream, adoptAll);
+
+		List<?> dogs = (List<?>) deserialized[0];
+		assertThat(dogs.size(), is(2));
+		assertThat(((Dog) dogs.get(0)).name, is("Brutus"));
+		assertThat(((Dog) dogs.get(1)).name, is("Rex"));
+	}
+
+	@Test
+	public void shouldBindTheWholeBodyOfSingleParameterMethodsWhenConfigured() throws Exception {
+		engine = new GsonDeserializationEngine(new DefaultGsonConfiguration() {
+			@Override
+			public boolean deserializeWithoutRoot() {
+				return true;
+			}
+		}, new GsonAdapters(mock(Container.class)));
+		deserializer = new GsonDeserialization(provider, Collections.<JsonDeserializer<?>> emptyList(), localization,
+				engine, request, metrics, limits);
+		when(provider.parameterNamesFor(jump.getMethod())).thenReturn(new String[] { "dog", "times" });
+
+		Dog dog = (Dog) deserializer.deserialize(new ByteArrayInputStream("{'name':'Brutus','age':7}".getBytes()),
+				bark)[0];
+		Object[] jumped = deserializer.deserialize(new ByteArrayInputStream("{'times':3}".getBytes()), jump);
+
+		assertThat(dog.name, is("Brutus"));
+		assertThat(dog.age, is(7));
+		assertThat(jumped[1], is((Object) 3));
+	}
+
+	@Test
+	public void shouldBindTheElementsOfAStreamedArrayOnlyWhenAskedFor() throws Exception {
+		limit(new DefaultGsonConfiguration() {
+			@Override
+			public long maxBodyBytes() {
+				return 16;
+			}
+
+			@Override
+			public int maxArrayLength() {
+				return 2;
+			}
+		});
+		when(request.getContentLength()).thenReturn(100);
+		InputStream stream = new ByteArrayInputStream(
+				"[{'name':'Brutus','age':7},{'name':'Rex'},{'name':'Bidu'},{'name':}]".getBytes());
+
+		Iterator<?> dogs = (Iterator<?>) deserializer.deserialize(stream, register)[0];
+
+		assertThat(((Dog) dogs.next()).name, is("Brutus"));
+		assertThat(((Dog) dogs.next()).name, is("Rex"));
+		assertThat(((Dog) dogs.next()).name, is("Bidu"));
+		try {
+			dogs.next();
+			fail("should not bind a malformed element");
+		} catch (JsonParseException e) {
+			assertThat(limits.getBytesExceeded(), is(0L));
+		}
+	}
+
+	@Test
+	public void shouldStreamEachValueOfAnNdjsonBody() throws Exception {
+		when(request.getContentType()).thenReturn("application/x-ndjson; charset=UTF-8");
+		InputStream stream = new ByteArrayInputStream("{\"name\":\"Brutus\",\"age\":7}\n{\"name\":\"Rex\"}\n".getBytes());
+
+		Iterator<?> dogs = (Iterator<?>) deserializer.deserialize(stream, register)[0];
+
+		assertThat(dogs.hasNext(), is(true));
+		assertThat(((Dog) dogs.next()).age, is(7));
+		assertThat(((Dog) dogs.next()).name, is("Rex"));
+		assertThat(dogs.hasNext(), is(false));
+	}
+
+	@Test
+	public void shouldReadWithTypeAdapterFactoryComponents() throws Exception {
+		Container container = mock(Container.class);
+		when(container.instanceFor(DogFactory.class)).thenReturn(new DogFactory());
+		GsonAdapters adapters = new GsonAdapters(container);
+		adapters.handle(DogFactory.class);
+		deserializer = new GsonDeserialization(provider, Collections.<JsonDeserializer<?>> emptyList(), localization,
+				new GsonDeserializationEngine(new DefaultGsonConfiguration(), adapters), request, metrics, limits);
+		when(provider.parameterNamesFor(bark.getMethod())).thenReturn(new String[] { "dog" });
+
+		Object[] deserialized = deserializer.deserialize(new ByteArrayInputStream("{'dog':'Brutus'}".getBytes()), bark);
+
+		assertThat(((Dog) deserialized[0]).name, is("Brutus"));
+	}
+
+	@ApplicationScoped
+	static class DogFactory implements TypeAdapterFactory {
+		@SuppressWarnings("unchecked")
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+			if (type.getRawType() != Dog.class) {
+				return null;
+			}
+			return (TypeAdapter<T>) new TypeAdapter<Dog>() {
+				@Override
+				public void write(JsonWriter out, Dog dog) throws IOException {
+					out.value(dog.name);
+				}
+
+				@Override
+				public Dog read(JsonReader in) throws IOException {
+					Dog dog = new Dog();
+					dog.name = in.nextString();
+					return dog;
+				}
+			};
+		}
+	}
+
+	@Test
+	public void shouldRefuseBodiesOverTheByteLimitBeforeReadingThem() throws Exception {
+		limit(new DefaultGsonConfiguration() {
+			@Override
+			public long maxBodyBytes() {
+				return 16;
+			}
+		});
+		when(provider.parameterNamesFor(bark.getMethod())).thenReturn(new String[] { "dog" });
+		byte[] body = "{'dog':{'name':'Brutus','age':7}}".getBytes();
+
+		when(request.getContentLength()).thenReturn(body.length);
+		ByteArrayInputStream declared = new ByteArrayInputStream(body);
+		assertExceeds(Limit.BYTES, declared, bark);
+		assertThat(declared.available(), is(body.length));
+
+		when(request.getContentLength()).thenReturn(-1);
+		assertExceeds(Limit.BYTES, new ByteArrayInputStream(body), bark);
+		assertThat(limits.getBytesExceeded(), is(2L));
+	}
+
+	@Test
+	public void shouldRefuseDeepOrLongStructuresEvenWhenSkipped() throws Exception {
+		limit(new DefaultGsonConfiguration() {
+			@Override
+			public int maxBodyDepth() {
+				return 3;
+			}
+
+			@Override
+			public int maxArrayLength() {
+				return 3;
+			}
+
+			@Override
+			public int maxStringLength() {
+				return 8;
+			}
+		});
+		when(provider.parameterNamesFor(bark.getMethod())).thenReturn(new String[] { "dog" });
+
+		assertExceeds(Limit.DEPTH, "{'extra':[[[1]]],'dog':{'name':'Rex'}}", bark);
+		assertExceeds(Limit.ARRAY_LENGTH, "{'extra':[1,2,3,4],'dog':{'name':'Rex'}}", bark);
+		assertExceeds(Limit.STRING_LENGTH, "{'dog':{'name':'Brutus the Third'}}", bark);
+
+		Object[] deserialized = deserializer.deserialize(
+				new ByteArrayInputStream("{'extra':[[1],2,3],'dog':{'name':'Rex'}}".getBytes()), bark);
+		assertThat(((Dog) deserialized[0]).name, is("Rex"));
+		assertThat(limits.getDepthExceeded(), is(1L));
+		assertThat(limits.getArrayLengthExceeded(), is(1L));
+		assertThat(limits.getStringLengthExceeded(), is(1L));
+	}
+
+	private void limit(DefaultGsonConfiguration configuration) {
+		limits.unregister();
+		limits = new BodyLimits(configuration, mock(ServletContext.class));
+		deserializer = new GsonDeserialization(provider, Collections.<JsonDeserializer<?>> emptyList(), localization,
+				engine, request, metrics, limits);
+	}
+
+	private void assertExceeds(Limit limit, String body, ResourceMethod method) {
+		assertExceeds(limit, new ByteArrayInputStream(body.getBytes()), method);
+	}
+
+	private void assertExceeds(Limit limit, InputStream body, ResourceMethod method) {
+		try {
+			deserializer.deserialize(body, method);
+			fail("should exceed the " + limit + " limit");
+		} catch (ResultException e) {
+			assertThat(((BodyLimitExceededException) e.getCause()).getLimit(), is(limit));
+		}
+	}
+
+	@Test
+	public void shouldReportWhatWasReadForTheResourceMethod() throws Exception {
+		JsonMetricsListener listener = mock(JsonMetricsListener.class);
+		deserializer = new GsonDeserialization(provider, Collections.<JsonDeserializer<?>> emptyList(), localization,
+				engine, request, new JsonMetrics(Arrays.asList(listener)), limits);
+
+		byte[] body = "{'dog':{'name':'Brutus','age':7}}".getBytes();
+		when(provider.parameterNamesFor(bark.getMethod())).thenReturn(new String[] { "dog" });
+
+		deserializer.deserialize(new ByteArrayInputStream(body), bark);
+
+		verify(listener).deserialized(eq(bark), anyLong(), eq((long) body.length), eq(0), eq(1));
+	}
+
+}
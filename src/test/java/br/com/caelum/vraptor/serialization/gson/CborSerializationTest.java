@@ -0,0 +1,186 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.caelum.vraptor.core.Localization;
+import br.com.caelum.vraptor.core.MethodInfo;
+import br.com.caelum.vraptor.deserialization.gson.BodyLimitExceededException;
+import br.com.caelum.vraptor.deserialization.gson.BodyLimits;
+import br.com.caelum.vraptor.deserialization.gson.CborDeserialization;
+import br.com.caelum.vraptor.deserialization.gson.GsonDeserializationEngine;
+import br.com.caelum.vraptor.http.ParameterNameProvider;
+import br.com.caelum.vraptor.interceptor.DefaultTypeNameExtractor;
+import br.com.caelum.vraptor.ioc.Container;
+import br.com.caelum.vraptor.resource.DefaultResourceClass;
+import br.com.caelum.vraptor.resource.DefaultResourceMethod;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+import br.com.caelum.vraptor.serialization.HibernateProxyInitializer;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Client;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Item;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Order;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+import br.com.caelum.vraptor.view.ResultException;
+
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonSerializer;
+
+public class CborSerializationTest {
+
+	private CborSerialization serialization;
+
+	private ByteArrayOutputStream stream;
+
+	private HttpServletResponse response;
+
+	private HttpServletRequest request;
+
+	@Before
+	public void setup() throws Exception {
+		stream = new ByteArrayOutputStream();
+		response = mock(HttpServletResponse.class);
+		request = mock(HttpServletRequest.class);
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				stream.write(b);
+			}
+		});
+
+		serialization = new CborSerialization(response, request, new DefaultTypeNameExtractor(),
+				new HibernateProxyInitializer(), Collections.<JsonSerializer<?>> emptyList(),
+				new GsonSerializationEngine(new DefaultGsonConfiguration(), new GsonAdapters(mock(Container.class))),
+				mock(MethodInfo.class), JsonMetrics.NONE, mock(AsyncSerializationExecutor.class));
+	}
+
+	static class OrderController {
+		public void place(Order order) {
+		}
+
+		public void importAll(Iterator<Order> orders) {
+		}
+	}
+
+	@Test
+	public void shouldWriteObjectsAsIndefiniteLengthMaps() {
+		serialization.from(new Client("s\u00e3o")).serialize();
+
+		byte[] expected = { (byte) 0xbf, 0x66, 'c', 'l', 'i', 'e', 'n', 't', (byte) 0xbf, 0x64, 'n', 'a', 'm', 'e',
+				0x64, 's', (byte) 0xc3, (byte) 0xa3, 'o', (byte) 0xff, (byte) 0xff };
+		assertThat(stream.toByteArray(), equalTo(expected));
+		verify(response).setContentType("application/cbor");
+	}
+
+	@Test
+	public void shouldReadBackWhatItWrites() throws Exception {
+		Order order = new Order(new Client("guilherme silveira"), 15.5, "pack it nicely, please", new Item(
+				"any item", 12.99), new Item("another item", -3));
+		serialization.from(order).include("items").exclude("comments").serialize();
+
+		ParameterNameProvider provider = mock(ParameterNameProvider.class);
+		ResourceMethod place = new DefaultResourceMethod(new DefaultResourceClass(OrderController.class),
+				OrderController.class.getDeclaredMethod("place", Order.class));
+		when(provider.parameterNamesFor(place.getMethod())).thenReturn(new String[] { "order" });
+
+		Order read = (Order) deserialization(provider, new DefaultGsonConfiguration()).deserialize(
+				new ByteArrayInputStream(stream.toByteArray()), place)[0];
+
+		assertThat(read.price, is(15.5));
+		assertThat(read.comments, is((String) null));
+		assertThat(read.client, is((Client) null));
+		assertThat(read.items.size(), is(2));
+		assertThat(Arrays.asList(read.items.get(0).name, read.items.get(1).name),
+				equalTo(Arrays.asList("any item", "another item")));
+		assertThat(read.items.get(0).price, is(12.99));
+		assertThat(read.items.get(1).price, is(-3.0));
+	}
+
+	@Test
+	public void shouldRefuseIteratorParameters() throws Exception {
+		ResourceMethod importAll = new DefaultResourceMethod(new DefaultResourceClass(OrderController.class),
+				OrderController.class.getDeclaredMethod("importAll", Iterator.class));
+
+		try {
+			deserialization(mock(ParameterNameProvider.class), new DefaultGsonConfiguration()).deserialize(
+					new ByteArrayInputStream(new byte[] { (byte) 0x9f, (byte) 0xff }), importAll);
+			fail("Expected ResultException");
+		} catch (ResultException e) {
+			assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+		}
+	}
+
+	@Test
+	public void shouldLimitTheBytesOfTheBody() throws Exception {
+		serialization.from(new Client("guilherme silveira")).serialize();
+
+		ParameterNameProvider provider = mock(ParameterNameProvider.class);
+		ResourceMethod place = new DefaultResourceMethod(new DefaultResourceClass(OrderController.class),
+				OrderController.class.getDeclaredMethod("place", Order.class));
+		when(provider.parameterNamesFor(place.getMethod())).thenReturn(new String[] { "order" });
+		GsonConfiguration configuration = new DefaultGsonConfiguration() {
+			@Override
+			public long maxBodyBytes() {
+				return 16;
+			}
+		};
+
+		try {
+			deserialization(provider, configuration).deserialize(new ByteArrayInputStream(stream.toByteArray()),
+					place);
+			fail("Expected ResultException");
+		} catch (ResultException e) {
+			assertThat(e.getCause(), instanceOf(BodyLimitExceededException.class));
+		}
+	}
+
+	@Test
+	public void shouldReadLongChainsOfTagsWithoutRecursion() throws Exception {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(new byte[] { (byte) 0xa1, 0x65, 'o', 'r', 'd', 'e', 'r' });
+		for (int i = 0; i < 200000; i++) {
+			body.write(0xc6);
+		}
+		body.write(new byte[] { (byte) 0xa1, 0x65, 'p', 'r', 'i', 'c', 'e', 0x07 });
+
+		ParameterNameProvider provider = mock(ParameterNameProvider.class);
+		ResourceMethod place = new DefaultResourceMethod(new DefaultResourceClass(OrderController.class),
+				OrderController.class.getDeclaredMethod("place", Order.class));
+		when(provider.parameterNamesFor(place.getMethod())).thenReturn(new String[] { "order" });
+
+		Order read = (Order) deserialization(provider, new DefaultGsonConfiguration()).deserialize(
+				new ByteArrayInputStream(body.toByteArray()), place)[0];
+
+		assertThat(read.price, is(7.0));
+	}
+
+	private CborDeserialization deserialization(ParameterNameProvider provider, GsonConfiguration configuration) {
+		Localization localization = mock(Localization.class);
+		when(localization.getLocale()).thenReturn(Locale.US);
+		when(request.getContentLength()).thenReturn(-1);
+		GsonDeserializationEngine engine = new GsonDeserializationEngine(configuration, new GsonAdapters(
+				mock(Container.class)));
+		return new CborDeserialization(provider, Collections.<JsonDeserializer<?>> emptyList(), localization, engine,
+				request, JsonMetrics.NONE, new BodyLimits(configuration, mock(ServletContext.class)));
+	}
+}
@@ -0,0 +1,83 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.caelum.vraptor.deserialization.gson.GsonDeserializationEngine;
+import br.com.caelum.vraptor.interceptor.DefaultTypeNameExtractor;
+import br.com.caelum.vraptor.ioc.Container;
+import br.com.caelum.vraptor.serialization.NullProxyInitializer;
+import br.com.caelum.vraptor.serialization.Serializer;
+import br.com.caelum.vraptor.serialization.gson.generated.Invoice;
+import br.com.caelum.vraptor.serialization.gson.generated.Invoice_GsonAdapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonSerializer;
+
+/**
+ * Runs the adapters vraptor-gson-processor generated for the classes of the
+ * generated package, kept there as it wrote them.
+ */
+public class GeneratedAdaptersTest {
+
+	private static final String JSON = "{\"id\":7,\"customer\":\"Renan\",\"total\":30.5,"
+			+ "\"first\":{\"product\":\"pen\",\"quantity\":2},"
+			+ "\"lines\":[{\"product\":\"pen\",\"quantity\":2},{\"product\":\"ink\",\"quantity\":1}],\"cache\":\"x\"}";
+
+	private GsonSerializationEngine engine;
+
+	private StringWriter writer;
+
+	@Before
+	public void setUp() {
+		engine = new GsonSerializationEngine(new DefaultGsonConfiguration(), new GsonAdapters(mock(Container.class)));
+	}
+
+	@Test
+	public void shouldReadAndWriteLikeGson() {
+		Gson gson = new GsonDeserializationEngine(new DefaultGsonConfiguration(), new GsonAdapters(
+				mock(Container.class))).gsonFor(Collections.<JsonDeserializer<?>> emptyList());
+
+		assertThat(gson.getAdapter(Invoice.class).getClass().getName(), is(Invoice_GsonAdapter.class.getName()));
+
+		Invoice invoice = gson.fromJson(JSON, Invoice.class);
+
+		assertThat(write(serializer().from(invoice).recursive()), equalTo("{\"invoice\":{\"id\":7,"
+				+ "\"customer\":\"Renan\",\"total\":30.5,\"first\":{\"product\":\"pen\",\"quantity\":2},"
+				+ "\"lines\":[{\"product\":\"pen\",\"quantity\":2},{\"product\":\"ink\",\"quantity\":1}]}}"));
+	}
+
+	@Test
+	public void shouldApplyIncludesAndExcludes() {
+		Invoice invoice = new Gson().fromJson(JSON, Invoice.class);
+
+		assertThat(write(serializer().from(invoice)),
+				equalTo("{\"invoice\":{\"id\":7,\"customer\":\"Renan\",\"total\":30.5}}"));
+		assertThat(write(serializer().from(invoice).include("lines").exclude("customer")),
+				equalTo("{\"invoice\":{\"id\":7,\"total\":30.5,"
+						+ "\"lines\":[{\"product\":\"pen\",\"quantity\":2},{\"product\":\"ink\",\"quantity\":1}]}}"));
+		assertThat(write(serializer().from(invoice).include("first").exclude("first.quantity")),
+				equalTo("{\"invoice\":{\"id\":7,\"customer\":\"Renan\",\"total\":30.5,"
+						+ "\"first\":{\"product\":\"pen\"}}}"));
+	}
+
+	private GsonSerializer serializer() {
+		writer = new StringWriter();
+		return new GsonSerializer(new VraptorGsonBuilder(Collections.<JsonSerializer<?>> emptyList(), engine),
+				writer, new DefaultTypeNameExtractor(), new NullProxyInitializer());
+	}
+
+	private String write(Serializer serializer) {
+		serializer.serialize();
+		return writer.toString();
+	}
+}
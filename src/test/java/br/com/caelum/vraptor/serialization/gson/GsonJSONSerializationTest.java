@@ -1,42 +1,86 @@
 package br.com.caelum.vraptor.serialization.gson;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.List;
-
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.proxy.HibernateProxy;
 import org.hibernate.proxy.LazyInitializer;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import br.com.caelum.vraptor.core.MethodInfo;
 import br.com.caelum.vraptor.interceptor.DefaultTypeNameExtractor;
+import br.com.caelum.vraptor.ioc.ApplicationScoped;
+import br.com.caelum.vraptor.ioc.Container;
+import br.com.caelum.vraptor.resource.ResourceMethod;
 import br.com.caelum.vraptor.serialization.HibernateProxyInitializer;
+import br.com.caelum.vraptor.serialization.gson.CompressingOutputStream.Compression;
 import br.com.caelum.vraptor.serialization.gson.adapters.CalendarSerializer;
+import br.com.caelum.vraptor.serialization.gson.adapters.DateSerializer;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetricsListener;
 
 import com.google.common.collect.ForwardingCollection;
+import com.google.common.io.CharStreams;
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 public class GsonJSONSerializationTest {
 
@@ -50,20 +94,49 @@ public class GsonJSONSerializationTest {
 
 	private HibernateProxyInitializer initializer;
 
+	private GsonSerializationEngine engine;
+
+	private HttpServletRequest request;
+
+	private AsyncSerializationExecutor executor;
+
+	private MethodInfo methodInfo;
+
+	private JsonMetrics metrics;
+
 	@Before
 	public void setup() throws Exception {
 		this.stream = new ByteArrayOutputStream();
 
 		response = mock(HttpServletResponse.class);
-		when(response.getWriter()).thenReturn(new PrintWriter(stream));
+		request = mock(HttpServletRequest.class);
+		executor = mock(AsyncSerializationExecutor.class);
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				stream.write(b);
+			}
+		});
 		extractor = new DefaultTypeNameExtractor();
 		initializer = new HibernateProxyInitializer();
+		engine = new GsonSerializationEngine(new DefaultGsonConfiguration() {
+			@Override
+			public int compressionThreshold() {
+				return 1024;
+			}
+		}, new GsonAdapters(mock(Container.class)));
+		methodInfo = mock(MethodInfo.class);
+		metrics = JsonMetrics.NONE;
 
 		this.serialization = new GsonJSONSerialization(response,
+				request,
 				extractor,
 				initializer,
-				Collections.<JsonSerializer<?>> emptyList()
-				);
+				Collections.<JsonSerializer<?>> emptyList(),
+				engine,
+				methodInfo,
+				metrics,
+				executor);
 	}
 
 	public static class Address {
@@ -260,6 +333,76 @@ public class GsonJSONSerializationTest {
 		assertThat(result(), not(containsString("15.0")));
 	}
 
+	@Test
+	public void shouldRefuseAPathNoElementHasWhenItIsIncluded() {
+		Order order = new Order(new Client("guilherme silveira"), 15.0, "pack it nicely, please");
+		try {
+			serialization.from(Arrays.asList(order, order)).include("nope");
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertThat(result(), is(equalTo("")));
+		}
+	}
+
+	@Test
+	public void shouldSerializeIteratorElementsAsAList() {
+		String expectedResult = "{\"price\":15.0,\"comments\":\"pack it nicely, please\"}";
+		expectedResult = "{\"list\":[" + expectedResult + "," + expectedResult + "]}";
+
+		Order order = new Order(new Client("guilherme silveira"), 15.0, "pack it nicely, please");
+		serialization.from(Arrays.asList(order, order).iterator()).serialize();
+		assertThat(result(), is(equalTo(expectedResult)));
+	}
+
+	public static class Pack implements Iterable<Client> {
+		String leader;
+
+		List<Client> clients;
+
+		public Pack(String leader, Client... clients) {
+			this.leader = leader;
+			this.clients = Arrays.asList(clients);
+		}
+
+		public Iterator<Client> iterator() {
+			return clients.iterator();
+		}
+	}
+
+	@Test
+	public void shouldSerializeIterableEntitiesAsObjects() {
+		serialization.from(new Pack("renan", new Client("guilherme"))).include("clients").serialize();
+
+		assertThat(result(), is(equalTo("{\"pack\":{\"leader\":\"renan\",\"clients\":[{\"name\":\"guilherme\"}]}}")));
+	}
+
+	@Test
+	public void shouldSerializeScrollableResultsClearingTheSession() {
+		Order order = new Order(new Client("guilherme silveira"), 15.0, "pack it nicely, please");
+		ScrollableResults results = mock(ScrollableResults.class);
+		Session session = mock(Session.class);
+		when(results.next()).thenReturn(true, true, true, false);
+		when(results.get()).thenReturn(new Object[] { order });
+
+		serialization.from(new ScrollableResultsIterator(results, session, 2), "orders").exclude("comments")
+				.serialize();
+
+		assertThat(result(), is(equalTo("{\"orders\":[{\"price\":15.0},{\"price\":15.0},{\"price\":15.0}]}")));
+		verify(session, times(1)).clear();
+		verify(results).close();
+	}
+
+	@Test
+	public void shouldResolvePathsForEachElementTypeOfACollection() {
+		String expectedResult = "{\"list\":[{\"notes\":\"complex package\",\"client\":{\"name\":\"john\"},\"price\":15.0},"
+				+ "{\"client\":{\"name\":\"guilherme silveira\"},\"price\":15.0}]}";
+
+		Order advanced = new AdvancedOrder(new Client("john"), 15.0, "pack it nicely, please", "complex package");
+		Order order = new Order(new Client("guilherme silveira"), 15.0, "pack it nicely, please");
+		serialization.from(Arrays.asList(advanced, order)).include("client").exclude("comments").serialize();
+		assertThat(result(), is(equalTo(expectedResult)));
+	}
+
 	@Test
 	@Ignore("not supported yet")
 	public void shouldSerializeCollectionWithPrefixTagAndNamespace() {
@@ -389,8 +532,51 @@ public class GsonJSONSerializationTest {
 		assertThat(result(), equalTo(expected));
 	}
 
+	@Test
+	public void shouldReuseCompiledGsonForTheSameConfiguration() {
+		Order order = new Order(new Client("guilherme silveira"), 15.0, "pack it nicely, please");
+		serialization.from(order).exclude("price").serialize();
+		serialization.from(order).exclude("price").serialize();
+		serialization.from(order).serialize();
+
+		assertThat(engine.getMissCount(), is(2L));
+		assertThat(engine.getHitCount(), is(1L));
+	}
+
+	@Test
+	public void shouldNotCacheGsonWithAdaptersThatAreNotApplicationScoped() {
+		List<JsonSerializer<?>> adapters = new ArrayList<JsonSerializer<?>>();
+		adapters.add(new AddressSerializer());
+		VraptorGsonBuilder builder = new VraptorGsonBuilder(adapters, engine);
+
+		Gson first = builder.create(SerializationOptions.DEFAULT);
+		Gson second = builder.create(SerializationOptions.DEFAULT);
+
+		assertThat(first, is(not(sameInstance(second))));
+		assertThat(engine.getMissCount(), is(0L));
+		assertThat(engine.getHitCount(), is(0L));
+	}
+
+	@Test
+	public void shouldNotChangeSharedOptions() {
+		SerializationOptions options = SerializationOptions.DEFAULT.withAlias("client").withoutRoot();
+		Client client = new Client("guilherme silveira");
+
+		serialization.with(options).indented().from(client, "customer").serialize();
+		assertThat(result(), equalTo("{\n  \"name\": \"guilherme silveira\"\n}"));
+
+		stream.reset();
+		serialization.with(options).from(client).serialize();
+		assertThat(result(), equalTo("{\"name\":\"guilherme silveira\"}"));
+		assertThat(options, equalTo(SerializationOptions.DEFAULT.withAlias("client").withoutRoot()));
+	}
+
 	private String result() {
-		return new String(stream.toByteArray());
+		try {
+			return new String(stream.toByteArray(), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
 	}
 
 	public static class SomeProxy extends Client implements HibernateProxy {
@@ -435,6 +621,27 @@ public class GsonJSONSerializationTest {
 		assertThat(result(), is("{\"client\":{\"aField\":\"abc\",\"name\":\"my name\"}}"));
 	}
 
+	@Test
+	public void shouldSerializeProxiedFieldsWithTheSameProjection() throws Exception {
+		LazyInitializer initializer = mock(LazyInitializer.class);
+		when(initializer.getImplementation()).thenReturn(new Client("john", new Address("R. Vergueiro")));
+
+		Order order = new Order(new SomeProxy(initializer), 15.0, "pack it nicely, please");
+		serialization.from(order).include("client").exclude("comments").serialize();
+
+		assertThat(result(), is("{\"order\":{\"client\":{\"name\":\"john\"},\"price\":15.0}}"));
+	}
+
+	@Test
+	public void shouldReadProxyTypesLikeGson() throws Exception {
+		Gson gson = engine.gsonFor(Collections.<JsonSerializer<?>> emptyList(), false);
+
+		SomeProxy proxy = gson.fromJson("{\"aField\":\"abc\",\"name\":\"my name\"}", SomeProxy.class);
+
+		assertThat(proxy.aField, is("abc"));
+		assertThat(proxy.name, is("my name"));
+	}
+
 	static class MyCollection extends ForwardingCollection<Order> {
 		@Override
 		protected Collection<Order> delegate() {
@@ -458,23 +665,111 @@ public class GsonJSONSerializationTest {
 		adapters.add(new CollectionSerializer());
 
 		GsonJSONSerialization serialization = new GsonJSONSerialization(response,
+				request,
 				extractor,
 				initializer,
-				adapters);
+				adapters,
+				engine,
+				methodInfo,
+				metrics,
+				executor);
 
 		serialization.withoutRoot().from(new MyCollection()).serialize();
 		assertThat(result(), is(equalTo(expectedResult)));
 	}
 
+	static class AddressSerializer implements Serializable, JsonSerializer<Address> {
+		public JsonElement serialize(Address address, java.lang.reflect.Type typeOfSrc,
+				JsonSerializationContext context) {
+			return new JsonPrimitive(address.street);
+		}
+	}
+
+	@ApplicationScoped
+	static class ClientAdapter extends TypeAdapter<Client> {
+		@Override
+		public void write(JsonWriter out, Client client) throws IOException {
+			out.value(client.name.toUpperCase());
+		}
+
+		@Override
+		public Client read(JsonReader in) throws IOException {
+			return new Client(in.nextString());
+		}
+	}
+
+	@Test
+	public void shouldFindTheAdaptedTypeAnywhereInTheSerializerHierarchy() {
+		List<JsonSerializer<?>> adapters = new ArrayList<JsonSerializer<?>>();
+		adapters.add(new AddressSerializer());
+
+		GsonJSONSerialization serialization = new GsonJSONSerialization(response,
+				request,
+				extractor,
+				initializer,
+				adapters,
+				engine,
+				methodInfo,
+				metrics,
+				executor);
+
+		serialization.withoutRoot().from(new Client("renan", new Address("vergueiro"))).include("address").serialize();
+		assertThat(result(), is(equalTo("{\"name\":\"renan\",\"address\":\"vergueiro\"}")));
+	}
+
+	static class UpperCaseAdapter extends TypeAdapter<Client> {
+		@Override
+		public void write(JsonWriter out, Client client) throws IOException {
+			out.value(client.name.toUpperCase());
+		}
+
+		@Override
+		public Client read(JsonReader in) throws IOException {
+			return new Client(in.nextString());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldRefuseTypeAdapterComponentsThatAreNotApplicationScoped() {
+		new GsonAdapters(mock(Container.class)).handle(UpperCaseAdapter.class);
+	}
+
+	@Test
+	public void shouldWriteWithTypeAdapterComponents() {
+		Container container = mock(Container.class);
+		when(container.instanceFor(ClientAdapter.class)).thenReturn(new ClientAdapter());
+		GsonAdapters adapters = new GsonAdapters(container);
+		adapters.handle(ClientAdapter.class);
+		adapters.handle(Address.class);
+
+		GsonJSONSerialization serialization = new GsonJSONSerialization(response,
+				request,
+				extractor,
+				initializer,
+				Collections.<JsonSerializer<?>> emptyList(),
+				new GsonSerializationEngine(new DefaultGsonConfiguration(), adapters),
+				methodInfo,
+				metrics,
+				executor);
+
+		serialization.from(new Order(new Client("renan"), 15.0, "")).include("client").serialize();
+		assertThat(result(), is(equalTo("{\"order\":{\"client\":\"RENAN\",\"price\":15.0,\"comments\":\"\"}}")));
+	}
+
 	@Test
 	public void shouldSerializeCalendarLikeXstream() {
 		List<JsonSerializer<?>> adapters = new ArrayList<JsonSerializer<?>>();
-		adapters.add(new CalendarSerializer());
+		adapters.add(new CalendarSerializer(new DefaultGsonConfiguration()));
 
 		GsonJSONSerialization serialization = new GsonJSONSerialization(response,
+				request,
 				extractor,
 				initializer,
-				adapters);
+				adapters,
+				engine,
+				methodInfo,
+				metrics,
+				executor);
 
 		Client c = new Client("renan");
 		c.included = new GregorianCalendar(2012, 8, 3);
@@ -489,6 +784,59 @@ public class GsonJSONSerializationTest {
 		assertThat(result, is(equalTo(expectedResult)));
 	}
 
+	@Test
+	public void shouldSerializeDatesInTheCalendarShape() {
+		List<JsonSerializer<?>> adapters = new ArrayList<JsonSerializer<?>>();
+		adapters.add(new DateSerializer(new DefaultGsonConfiguration()));
+
+		GsonJSONSerialization serialization = new GsonJSONSerialization(response,
+				request,
+				extractor,
+				initializer,
+				adapters,
+				engine,
+				methodInfo,
+				metrics,
+				executor);
+
+		Timestamp timestamp = new Timestamp(1346641200000L);
+		serialization.withoutRoot().from(Arrays.asList(timestamp)).serialize();
+
+		assertThat(result(), is(equalTo("[{\"time\":\"1346641200000\",\"timezone\":\""
+				+ TimeZone.getDefault().getID() + "\"}]")));
+	}
+
+	@Test
+	public void shouldSerializeCalendarsAsIso8601WhenConfigured() {
+		GsonConfiguration configuration = new DefaultGsonConfiguration() {
+			@Override
+			public TemporalFormat temporalFormat() {
+				return TemporalFormat.ISO_8601;
+			}
+		};
+		List<JsonSerializer<?>> adapters = new ArrayList<JsonSerializer<?>>();
+		adapters.add(new CalendarSerializer(configuration));
+
+		GsonJSONSerialization serialization = new GsonJSONSerialization(response,
+				request,
+				extractor,
+				initializer,
+				adapters,
+				engine,
+				methodInfo,
+				metrics,
+				executor);
+
+		Client c = new Client("renan");
+		c.included = new GregorianCalendar(TimeZone.getTimeZone("America/Sao_Paulo"));
+		c.included.setTimeInMillis(1346641200000L);
+
+		serialization.from(c).serialize();
+
+		assertThat(result(), is(equalTo(
+				"{\"client\":{\"name\":\"renan\",\"included\":\"2012-09-03T00:00:00.000-03:00\"}}")));
+	}
+
 	@Test
 	@Ignore
 	// Por enquanto apenas a exclusão através da interface do Vraptor é aceita.
@@ -497,14 +845,324 @@ public class GsonJSONSerializationTest {
 		exclusions.add(new ClientAddressExclusion());
 
 		GsonJSONSerialization serialization = new GsonJSONSerialization(response,
+				request,
 				extractor,
 				initializer,
-				Collections.<JsonSerializer<?>> emptyList()
-				);
+				Collections.<JsonSerializer<?>> emptyList(),
+				engine,
+				methodInfo,
+				metrics,
+				executor);
 
 		serialization.withoutRoot().from(new Client("renan", new Address("rua joao sbarai"))).include("address")
 				.serialize();
 
 		assertThat(result(), not(containsString("address")));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void shouldReportWhatWasWrittenForTheResourceMethod() {
+		JsonMetricsListener listener = mock(JsonMetricsListener.class);
+		ResourceMethod method = mock(ResourceMethod.class);
+		when(methodInfo.getResourceMethod()).thenReturn(method);
+
+		serialization = new GsonJSONSerialization(response,
+				request,
+				extractor,
+				initializer,
+				Collections.<JsonSerializer<?>> emptyList(),
+				engine,
+				methodInfo,
+				new JsonMetrics(Arrays.asList(listener)),
+				executor);
+
+		serialization.from(Arrays.asList(new Client("renan"), new Client("guilherme"))).serialize();
+
+		verify(listener).serialized(eq(method), anyLong(), eq((long) stream.size()), eq(2L), eq(0), eq(1));
+	}
+
+	@Test
+	public void shouldReportTheBytesSentAfterCompression() {
+		JsonMetricsListener listener = mock(JsonMetricsListener.class);
+		ResourceMethod method = mock(ResourceMethod.class);
+		when(methodInfo.getResourceMethod()).thenReturn(method);
+		when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+		serialization = new GsonJSONSerialization(response,
+				request,
+				extractor,
+				initializer,
+				Collections.<JsonSerializer<?>> emptyList(),
+				engine,
+				methodInfo,
+				new JsonMetrics(Arrays.asList(listener)),
+				executor);
+
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < 200; i++) {
+			clients.add(new Client("client " + i));
+		}
+		serialization.from(clients).serialize();
+
+		verify(response).setHeader("Content-Encoding", "gzip");
+		verify(listener).serialized(eq(method), anyLong(), eq((long) stream.size()), eq(200L), eq(0), eq(1));
+	}
+
+	@Test
+	public void shouldGzipResponsesLargerThanTheThreshold() throws Exception {
+		when(request.getHeader("Accept-Encoding")).thenReturn("deflate;q=0.5, gzip");
+		when(response.getCharacterEncoding()).thenReturn("UTF-8");
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < 200; i++) {
+			clients.add(new Client("client " + i));
+		}
+		serialization.from(clients).serialize();
+
+		verify(response).setHeader("Content-Encoding", "gzip");
+		String json = CharStreams.toString(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(
+				stream.toByteArray())), "UTF-8"));
+		assertThat(json, startsWith("{\"list\":[{\"name\":\"client 0\"}"));
+		assertThat(json, endsWith("{\"name\":\"client 199\"}]}"));
+	}
+
+	@Test
+	public void shouldNotCompressUnlessEnabled() throws Exception {
+		when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < 200; i++) {
+			clients.add(new Client("client " + i));
+		}
+		new GsonJSONSerialization(response, request, extractor, initializer,
+				Collections.<JsonSerializer<?>> emptyList(), new GsonSerializationEngine(new DefaultGsonConfiguration(),
+						new GsonAdapters(mock(Container.class))), methodInfo, metrics, executor).from(clients).serialize();
+
+		verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+		assertThat(result(), startsWith("{\"list\":[{\"name\":\"client 0\"}"));
+	}
+
+	@Test
+	public void shouldNotTakeARefusedCodingThroughTheWildcard() throws Exception {
+		when(request.getHeader("Accept-Encoding")).thenReturn("gzip;q=0, *");
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < 200; i++) {
+			clients.add(new Client("client " + i));
+		}
+		serialization.from(clients).serialize();
+
+		verify(response).setHeader("Content-Encoding", "deflate");
+		verify(response, never()).setHeader("Content-Encoding", "gzip");
+	}
+
+	@Test
+	public void shouldGiveTheDeflaterBackWhenSerializationFails() throws Exception {
+		when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+		List<JsonSerializer<?>> serializers = new ArrayList<JsonSerializer<?>>();
+		serializers.add(new JsonSerializer<Client>() {
+			public JsonElement serialize(Client client, java.lang.reflect.Type type, JsonSerializationContext context) {
+				if (client.name.equals("client 1500")) {
+					throw new IllegalStateException("broken client");
+				}
+				return new JsonPrimitive(client.name);
+			}
+		});
+		serialization = new GsonJSONSerialization(response, request, extractor, initializer, serializers, engine,
+				methodInfo, metrics, executor);
+		List<Client> clients = new ArrayList<Client>();
+		for (int i = 0; i < 2000; i++) {
+			clients.add(new Client("client " + i));
+		}
+		int idle = engine.deflaters(Compression.GZIP).idle();
+
+		try {
+			serialization.from(clients).serialize();
+			fail("the serializer should have failed");
+		} catch (IllegalStateException e) {
+			assertThat(e.getMessage(), is("broken client"));
+		}
+
+		assertThat(engine.deflaters(Compression.GZIP).idle(), is(idle + 1));
+	}
+
+	@Test
+	public void shouldNotCompressResponsesSmallerThanTheThreshold() throws Exception {
+		when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+		serialization.from(new Client("renan")).serialize();
+
+		verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+		verify(response).addHeader("Vary", "Accept-Encoding");
+		assertThat(result(), is(equalTo("{\"client\":{\"name\":\"renan\"}}")));
+	}
+
+	@Test
+	public void shouldAnswerNotModifiedWhenTheClientHasTheSameOutput() throws Exception {
+		when(request.getMethod()).thenReturn("GET");
+		ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+
+		serialization.withETag().from(new Client("renan")).serialize();
+		verify(response).setHeader(eq("ETag"), etag.capture());
+		assertThat(result(), is(equalTo("{\"client\":{\"name\":\"renan\"}}")));
+
+		stream.reset();
+		when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+
+		serialization.withETag().from(new Client("renan")).serialize();
+
+		verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		assertThat(result(), is(equalTo("")));
+	}
+
+	@Test
+	public void shouldSendTheSameETagForAVersionOnEveryJvm() throws Exception {
+		when(request.getMethod()).thenReturn("GET");
+
+		serialization.withETag(42).from(new Client("renan")).include("address").exclude("name").serialize();
+
+		verify(response).setHeader("ETag", "\"974f2c28b1449694127c03863ceb9e96\"");
+	}
+
+	@Test
+	public void shouldSkipSerializationWhenTheVersionKeyMatches() throws Exception {
+		when(request.getMethod()).thenReturn("GET");
+		ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+
+		serialization.withETag(42).from(new Client("renan")).serialize();
+		verify(response).setHeader(eq("ETag"), etag.capture());
+
+		stream.reset();
+		when(request.getHeader("If-None-Match")).thenReturn("\"other\", " + etag.getValue());
+		serialization.withETag(42).from(new Client("guilherme")).serialize();
+
+		verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		assertThat(result(), is(equalTo("")));
+	}
+
+	@Test
+	public void shouldSerializeAsyncResponsesInTheExecutor() throws Exception {
+		ServletContext context = mock(ServletContext.class);
+		AsyncContext async = mock(AsyncContext.class);
+		when(request.isAsyncSupported()).thenReturn(true);
+		when(request.startAsync()).thenReturn(async);
+
+		executor = new AsyncSerializationExecutor(new DefaultGsonConfiguration(), context);
+		try {
+			serialization = new GsonJSONSerialization(response,
+					request,
+					extractor,
+					initializer,
+					Collections.<JsonSerializer<?>> emptyList(),
+					engine,
+					methodInfo,
+					metrics,
+					executor);
+
+			serialization.async().from(new Client("renan")).serialize();
+
+			verify(async, timeout(1000)).complete();
+			assertThat(result(), is(equalTo("{\"client\":{\"name\":\"renan\"}}")));
+			assertThat(executor.getCompleted(), is(1L));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldAbortAsyncSerializationsThatTimeOutWhileWriting() throws Exception {
+		ServletContext context = mock(ServletContext.class);
+		final AsyncContext async = mock(AsyncContext.class);
+		when(request.isAsyncSupported()).thenReturn(true);
+		when(request.startAsync()).thenReturn(async);
+		when(async.getResponse()).thenReturn(response);
+
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch timedOut = new CountDownLatch(1);
+		List<JsonSerializer<?>> serializers = new ArrayList<JsonSerializer<?>>();
+		serializers.add(new JsonSerializer<Client>() {
+			public JsonElement serialize(Client client, java.lang.reflect.Type type, JsonSerializationContext ctx) {
+				writing.countDown();
+				try {
+					timedOut.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return new JsonPrimitive(client.name);
+			}
+		});
+
+		executor = new AsyncSerializationExecutor(new DefaultGsonConfiguration(), context);
+		try {
+			serialization = new GsonJSONSerialization(response, request, extractor, initializer, serializers,
+					engine, methodInfo, metrics, executor);
+			serialization.async().from(Arrays.asList(new Client("renan"), new Client("guilherme"))).serialize();
+
+			ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+			verify(async).addListener(listener.capture());
+			assertThat(writing.await(1, TimeUnit.SECONDS), is(true));
+
+			final AsyncListener timeout = listener.getValue();
+			Thread container = new Thread() {
+				@Override
+				public void run() {
+					try {
+						timeout.onTimeout(new AsyncEvent(async));
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			};
+			container.start();
+			container.join(200);
+			verify(async, never()).complete();
+
+			timedOut.countDown();
+			container.join(1000);
+
+			verify(async, times(1)).complete();
+			verify(response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			assertThat(result(), is(equalTo("")));
+			assertThat(executor.getTimeouts(), is(1L));
+			assertThat(executor.getCompleted(), is(0L));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldAnswerFailedAsyncSerializationsWithInternalServerError() throws Exception {
+		ServletContext context = mock(ServletContext.class);
+		AsyncContext async = mock(AsyncContext.class);
+		when(request.isAsyncSupported()).thenReturn(true);
+		when(request.startAsync()).thenReturn(async);
+		when(async.getResponse()).thenReturn(response);
+
+		List<JsonSerializer<?>> serializers = new ArrayList<JsonSerializer<?>>();
+		serializers.add(new JsonSerializer<Client>() {
+			public JsonElement serialize(Client client, java.lang.reflect.Type type, JsonSerializationContext ctx) {
+				throw new IllegalStateException("broken client");
+			}
+		});
+
+		executor = new AsyncSerializationExecutor(new DefaultGsonConfiguration(), context);
+		try {
+			serialization = new GsonJSONSerialization(response, request, extractor, initializer, serializers,
+					engine, methodInfo, metrics, executor);
+			serialization.async().from(new Client("renan")).serialize();
+
+			verify(async, timeout(1000)).complete();
+			verify(response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			assertThat(result(), is(equalTo("")));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldWriteUtf8BytesToTheOutputStream() throws Exception {
+		serialization.from(new Client("Jo\u00e3o \u20ac \ud83d\ude00")).serialize();
+
+		verify(response).setCharacterEncoding("UTF-8");
+		assertThat(stream.toByteArray(), is(equalTo("{\"client\":{\"name\":\"Jo\u00e3o \u20ac \ud83d\ude00\"}}"
+				.getBytes("UTF-8"))));
+	}
+
+}
@@ -0,0 +1,152 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.caelum.vraptor.core.Localization;
+import br.com.caelum.vraptor.deserialization.gson.BodyLimits;
+import br.com.caelum.vraptor.deserialization.gson.GsonDeserialization;
+import br.com.caelum.vraptor.deserialization.gson.GsonDeserializationEngine;
+import br.com.caelum.vraptor.http.ParameterNameProvider;
+import br.com.caelum.vraptor.interceptor.DefaultTypeNameExtractor;
+import br.com.caelum.vraptor.ioc.Container;
+import br.com.caelum.vraptor.resource.DefaultResourceClass;
+import br.com.caelum.vraptor.resource.DefaultResourceMethod;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+import br.com.caelum.vraptor.serialization.NullProxyInitializer;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Client;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Item;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Order;
+import br.com.caelum.vraptor.serialization.gson.adapters.CalendarDeserializer;
+import br.com.caelum.vraptor.serialization.gson.adapters.CalendarSerializer;
+import br.com.caelum.vraptor.serialization.gson.adapters.DateSerializer;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonSerializer;
+
+public class GsonWarmUpTest {
+
+	private Container container;
+
+	private GsonAdapters adapters;
+
+	private CalendarSerializer calendarSerializer;
+
+	private DateSerializer dateSerializer;
+
+	private CalendarDeserializer calendarDeserializer;
+
+	public static class OrdersController {
+
+		public void create(Order order) {
+		}
+
+		public List<Client> list() {
+			return null;
+		}
+	}
+
+	@Before
+	public void setup() {
+		container = mock(Container.class);
+		adapters = new GsonAdapters(container);
+
+		calendarSerializer = new CalendarSerializer(new DefaultGsonConfiguration());
+		dateSerializer = new DateSerializer(new DefaultGsonConfiguration());
+		when(container.instanceFor(CalendarSerializer.class)).thenReturn(calendarSerializer);
+		when(container.instanceFor(DateSerializer.class)).thenReturn(dateSerializer);
+		calendarDeserializer = new CalendarDeserializer();
+		when(container.instanceFor(CalendarDeserializer.class)).thenReturn(calendarDeserializer);
+
+		adapters.handle(CalendarSerializer.class);
+		adapters.handle(DateSerializer.class);
+		adapters.handle(CalendarDeserializer.class);
+	}
+
+	@Test
+	public void shouldBuildTheGsonOfRequestsOnStartup() throws Exception {
+		GsonConfiguration configuration = new DefaultGsonConfiguration() {
+			@Override
+			public boolean warmUpOnStartup() {
+				return true;
+			}
+		};
+		GsonSerializationEngine serializationEngine = new GsonSerializationEngine(configuration, adapters);
+		GsonDeserializationEngine deserializationEngine = new GsonDeserializationEngine(configuration, adapters);
+
+		new GsonWarmUp(configuration, adapters, serializationEngine, deserializationEngine, container)
+				.handle(OrdersController.class);
+
+		assertThat(serializationEngine.getMissCount(), equalTo(2L));
+		assertThat(deserializationEngine.getMissCount(), equalTo(1L));
+
+		long hits = serializationEngine.getHitCount();
+		List<JsonSerializer<?>> serializers = Arrays.<JsonSerializer<?>> asList(dateSerializer, calendarSerializer);
+		new GsonSerializer(new VraptorGsonBuilder(serializers, serializationEngine), new StringWriter(),
+				new DefaultTypeNameExtractor(), new NullProxyInitializer()).from(
+				new Order(new Client("renan"), 15.0, "pack it", new Item("any item", 15.0))).serialize();
+
+		assertThat(serializationEngine.getMissCount(), equalTo(2L));
+		assertThat(serializationEngine.getHitCount(), equalTo(hits + 1));
+
+		ResourceMethod create = new DefaultResourceMethod(new DefaultResourceClass(OrdersController.class),
+				OrdersController.class.getMethod("create", Order.class));
+		ParameterNameProvider provider = mock(ParameterNameProvider.class);
+		when(provider.parameterNamesFor(create.getMethod())).thenReturn(new String[] { "order" });
+		Order order = (Order) new GsonDeserialization(provider, Arrays.<JsonDeserializer<?>> asList(
+				calendarDeserializer), mock(Localization.class), deserializationEngine, mock(HttpServletRequest.class),
+				JsonMetrics.NONE, new BodyLimits(configuration, mock(ServletContext.class))).deserialize(
+				new ByteArrayInputStream("{\"order\":{\"price\":15.0}}".getBytes("UTF-8")), create)[0];
+
+		assertThat(order.price, equalTo(15.0));
+		assertThat(deserializationEngine.getMissCount(), equalTo(1L));
+		assertThat(deserializationEngine.getHitCount(), equalTo(1L));
+	}
+
+	@Test
+	public void shouldNotBuildAGsonWithoutAnAdapterRequestsUse() {
+		when(container.instanceFor(CalendarDeserializer.class)).thenThrow(
+				new IllegalStateException("No request is active"));
+		GsonConfiguration configuration = new DefaultGsonConfiguration() {
+			@Override
+			public boolean warmUpOnStartup() {
+				return true;
+			}
+		};
+		GsonSerializationEngine serializationEngine = new GsonSerializationEngine(configuration, adapters);
+		GsonDeserializationEngine deserializationEngine = new GsonDeserializationEngine(configuration, adapters);
+
+		new GsonWarmUp(configuration, adapters, serializationEngine, deserializationEngine, container)
+				.handle(OrdersController.class);
+
+		assertThat(serializationEngine.getMissCount(), equalTo(2L));
+		assertThat(deserializationEngine.getMissCount(), equalTo(0L));
+	}
+
+	@Test
+	public void shouldDoNothingUnlessEnabled() {
+		GsonConfiguration configuration = new DefaultGsonConfiguration();
+		GsonSerializationEngine serializationEngine = new GsonSerializationEngine(configuration, adapters);
+		GsonDeserializationEngine deserializationEngine = new GsonDeserializationEngine(configuration, adapters);
+
+		new GsonWarmUp(configuration, adapters, serializationEngine, deserializationEngine, container)
+				.handle(OrdersController.class);
+
+		assertThat(serializationEngine.getMissCount(), equalTo(0L));
+		assertThat(deserializationEngine.getMissCount(), equalTo(0L));
+	}
+}
@@ -0,0 +1,79 @@
+package br.com.caelum.vraptor.serialization.gson;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.caelum.vraptor.core.MethodInfo;
+import br.com.caelum.vraptor.interceptor.DefaultTypeNameExtractor;
+import br.com.caelum.vraptor.ioc.Container;
+import br.com.caelum.vraptor.serialization.HibernateProxyInitializer;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Client;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Item;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerializationTest.Order;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+
+import com.google.gson.JsonSerializer;
+
+public class NdjsonSerializationTest {
+
+	private NdjsonSerialization serialization;
+
+	private ByteArrayOutputStream stream;
+
+	private HttpServletResponse response;
+
+	private HttpServletRequest request;
+
+	@Before
+	public void setup() throws Exception {
+		stream = new ByteArrayOutputStream();
+		response = mock(HttpServletResponse.class);
+		request = mock(HttpServletRequest.class);
+		when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				stream.write(b);
+			}
+		});
+
+		serialization = new NdjsonSerialization(response, request, new DefaultTypeNameExtractor(),
+				new HibernateProxyInitializer(), Collections.<JsonSerializer<?>> emptyList(),
+				new GsonSerializationEngine(new DefaultGsonConfiguration(), new GsonAdapters(mock(Container.class))),
+				mock(MethodInfo.class), JsonMetrics.NONE, mock(AsyncSerializationExecutor.class));
+	}
+
+	@Test
+	public void shouldWriteEachElementOnItsOwnLineWithTheProjection() {
+		Order first = new Order(new Client("guilherme"), 15.5, "pack it", new Item("any item", 12.99));
+		Order second = new Order(new Client("renan"), 3.0, "no rush", new Item("another item", 3.0));
+
+		serialization.from(Arrays.asList(first, second).iterator()).include("items").exclude("comments").serialize();
+
+		String expected = "{\"price\":15.5,\"items\":[{\"name\":\"any item\",\"price\":12.99}]}\n"
+				+ "{\"price\":3.0,\"items\":[{\"name\":\"another item\",\"price\":3.0}]}\n";
+		assertThat(new String(stream.toByteArray()), equalTo(expected));
+		verify(response).setContentType("application/x-ndjson");
+	}
+
+	@Test
+	public void shouldWriteOtherRootsAsASingleLineEvenWhenIndented() {
+		serialization.with(SerializationOptions.DEFAULT.indented()).from(new Client("renan"), "customer").serialize();
+
+		assertThat(new String(stream.toByteArray()), equalTo("{\"name\":\"renan\"}\n"));
+	}
+}
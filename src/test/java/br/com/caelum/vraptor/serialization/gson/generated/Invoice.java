@@ -0,0 +1,29 @@
+package br.com.caelum.vraptor.serialization.gson.generated;
+
+import java.util.List;
+
+import br.com.caelum.vraptor.serialization.gson.GenerateAdapter;
+
+@GenerateAdapter
+public class Invoice {
+
+	long id;
+
+	String customer;
+
+	private double total;
+
+	Line first;
+
+	List<Line> lines;
+
+	transient String cache;
+
+	public double getTotal() {
+		return total;
+	}
+
+	public void setTotal(double total) {
+		this.total = total;
+	}
+}
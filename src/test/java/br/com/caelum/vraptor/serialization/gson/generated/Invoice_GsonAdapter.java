@@ -0,0 +1,79 @@
+// Generated by vraptor-gson-processor from br.com.caelum.vraptor.serialization.gson.generated.Invoice. Do not edit.
+package br.com.caelum.vraptor.serialization.gson.generated;
+
+public final class Invoice_GsonAdapter extends br.com.caelum.vraptor.serialization.gson.GeneratedTypeAdapter<br.com.caelum.vraptor.serialization.gson.generated.Invoice> {
+
+	public Invoice_GsonAdapter(com.google.gson.Gson gson, br.com.caelum.vraptor.serialization.gson.GeneratedAdapters factory) {
+		super(gson, factory, br.com.caelum.vraptor.serialization.gson.generated.Invoice.class,
+				field(br.com.caelum.vraptor.serialization.gson.generated.Invoice.class, "id"),
+				field(br.com.caelum.vraptor.serialization.gson.generated.Invoice.class, "customer"),
+				field(br.com.caelum.vraptor.serialization.gson.generated.Invoice.class, "total"),
+				field(br.com.caelum.vraptor.serialization.gson.generated.Invoice.class, "first"),
+				field(br.com.caelum.vraptor.serialization.gson.generated.Invoice.class, "lines"));
+	}
+
+	@Override
+	public void write(com.google.gson.stream.JsonWriter out, br.com.caelum.vraptor.serialization.gson.generated.Invoice value) throws java.io.IOException {
+		if (value == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		if (isSerialized(0)) {
+			out.name("id");
+			write(out, 0, value.id);
+		}
+		if (isSerialized(1)) {
+			out.name("customer");
+			write(out, 1, value.customer);
+		}
+		if (isSerialized(2)) {
+			out.name("total");
+			write(out, 2, value.getTotal());
+		}
+		if (isSerialized(3)) {
+			out.name("first");
+			write(out, 3, value.first);
+		}
+		if (isSerialized(4)) {
+			out.name("lines");
+			write(out, 4, value.lines);
+		}
+		out.endObject();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public br.com.caelum.vraptor.serialization.gson.generated.Invoice read(com.google.gson.stream.JsonReader in) throws java.io.IOException {
+		if (in.peek() == com.google.gson.stream.JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		br.com.caelum.vraptor.serialization.gson.generated.Invoice value = new br.com.caelum.vraptor.serialization.gson.generated.Invoice();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (name.equals("id") && isDeserialized(0)) {
+				Object read = read(in, 0);
+				if (read != null) {
+					value.id = (java.lang.Long) read;
+				}
+			} else if (name.equals("customer") && isDeserialized(1)) {
+				value.customer = (java.lang.String) read(in, 1);
+			} else if (name.equals("total") && isDeserialized(2)) {
+				Object read = read(in, 2);
+				if (read != null) {
+					value.setTotal((java.lang.Double) read);
+				}
+			} else if (name.equals("first") && isDeserialized(3)) {
+				value.first = (br.com.caelum.vraptor.serialization.gson.generated.Line) read(in, 3);
+			} else if (name.equals("lines") && isDeserialized(4)) {
+				value.lines = (java.util.List<br.com.caelum.vraptor.serialization.gson.generated.Line>) read(in, 4);
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return value;
+	}
+}
@@ -0,0 +1,16 @@
+package br.com.caelum.vraptor.serialization.gson.generated;
+
+import br.com.caelum.vraptor.serialization.gson.GenerateAdapter;
+
+@GenerateAdapter
+public class Line {
+
+	String product;
+
+	int quantity;
+
+	Line(String product, int quantity) {
+		this.product = product;
+		this.quantity = quantity;
+	}
+}
@@ -0,0 +1,55 @@
+// Generated by vraptor-gson-processor from br.com.caelum.vraptor.serialization.gson.generated.Line. Do not edit.
+package br.com.caelum.vraptor.serialization.gson.generated;
+
+public final class Line_GsonAdapter extends br.com.caelum.vraptor.serialization.gson.GeneratedTypeAdapter<br.com.caelum.vraptor.serialization.gson.generated.Line> {
+
+	public Line_GsonAdapter(com.google.gson.Gson gson, br.com.caelum.vraptor.serialization.gson.GeneratedAdapters factory) {
+		super(gson, factory, br.com.caelum.vraptor.serialization.gson.generated.Line.class,
+				field(br.com.caelum.vraptor.serialization.gson.generated.Line.class, "product"),
+				field(br.com.caelum.vraptor.serialization.gson.generated.Line.class, "quantity"));
+	}
+
+	@Override
+	public void write(com.google.gson.stream.JsonWriter out, br.com.caelum.vraptor.serialization.gson.generated.Line value) throws java.io.IOException {
+		if (value == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		if (isSerialized(0)) {
+			out.name("product");
+			write(out, 0, value.product);
+		}
+		if (isSerialized(1)) {
+			out.name("quantity");
+			write(out, 1, value.quantity);
+		}
+		out.endObject();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public br.com.caelum.vraptor.serialization.gson.generated.Line read(com.google.gson.stream.JsonReader in) throws java.io.IOException {
+		if (in.peek() == com.google.gson.stream.JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		br.com.caelum.vraptor.serialization.gson.generated.Line value = newInstance();
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (name.equals("product") && isDeserialized(0)) {
+				value.product = (java.lang.String) read(in, 0);
+			} else if (name.equals("quantity") && isDeserialized(1)) {
+				Object read = read(in, 1);
+				if (read != null) {
+					value.quantity = (java.lang.Integer) read;
+				}
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return value;
+	}
+}
@@ -0,0 +1,88 @@
+package br.com.caelum.vraptor.serialization.gson.metrics;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.caelum.vraptor.resource.DefaultResourceMethod;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+
+public class JmxMetricsListenerTest {
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+	private JmxMetricsListener listener;
+
+	private ResourceMethod method;
+
+	static class DogController {
+		public void bark(String name) {
+		}
+	}
+
+	static class Kennel {
+		static class DogController {
+			public void bark(String name) {
+			}
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		ServletContext context = mock(ServletContext.class);
+		when(context.getContextPath()).thenReturn("/pets");
+		listener = new JmxMetricsListener(context);
+		method = DefaultResourceMethod.instanceFor(DogController.class,
+				DogController.class.getDeclaredMethod("bark", String.class));
+	}
+
+	@After
+	public void tearDown() {
+		listener.unregister();
+	}
+
+	@Test
+	public void shouldPublishTheNumbersOfEachResourceMethod() throws Exception {
+		listener.serialized(method, 1500000, 120, 3, 0, 1);
+		listener.serialized(method, 2500000, 80, -1, 1, 0);
+		listener.deserialized(method, 500000, 64, 1, 0);
+
+		ObjectName name = new ObjectName("br.com.caelum.vraptor.gson:context=\"/pets\",type=ResourceMethod,name="
+				+ "\"br.com.caelum.vraptor.serialization.gson.metrics.JmxMetricsListenerTest.DogController"
+				+ ".bark(java.lang.String)\"");
+
+		assertThat((Long) server.getAttribute(name, "Serializations"), is(2L));
+		assertThat((Long) server.getAttribute(name, "BytesWritten"), is(200L));
+		assertThat((Long) server.getAttribute(name, "ElementsWritten"), is(3L));
+		assertThat((Long) server.getAttribute(name, "Serialization99thPercentileMicros"), is(4096L));
+		assertThat((Long) server.getAttribute(name, "BytesRead"), is(64L));
+		assertThat((Long) server.getAttribute(name, "CacheHits"), is(2L));
+		assertThat((Long) server.getAttribute(name, "CacheMisses"), is(1L));
+
+		listener.unregister();
+		assertThat(server.isRegistered(name), is(false));
+	}
+
+	@Test
+	public void shouldPublishMethodsOfClassesWithTheSameSimpleNameApart() throws Exception {
+		ResourceMethod other = DefaultResourceMethod.instanceFor(Kennel.DogController.class,
+				Kennel.DogController.class.getDeclaredMethod("bark", String.class));
+
+		listener.serialized(method, 1500000, 120, 3, 0, 1);
+		listener.serialized(other, 2500000, 80, -1, 1, 0);
+
+		assertThat(server.queryNames(new ObjectName("br.com.caelum.vraptor.gson:context=\"/pets\",*"), null).size(),
+				is(2));
+	}
+}
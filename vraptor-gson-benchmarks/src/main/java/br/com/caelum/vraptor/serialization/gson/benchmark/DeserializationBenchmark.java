@@ -0,0 +1,155 @@
+package br.com.caelum.vraptor.serialization.gson.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.vraptor.core.Localization;
+import br.com.caelum.vraptor.deserialization.gson.BodyLimits;
+import br.com.caelum.vraptor.deserialization.gson.GsonDeserialization;
+import br.com.caelum.vraptor.deserialization.gson.GsonDeserializationEngine;
+import br.com.caelum.vraptor.http.ParameterNameProvider;
+import br.com.caelum.vraptor.resource.DefaultResourceClass;
+import br.com.caelum.vraptor.resource.DefaultResourceMethod;
+import br.com.caelum.vraptor.resource.ResourceMethod;
+import br.com.caelum.vraptor.serialization.gson.DefaultGsonConfiguration;
+import br.com.caelum.vraptor.serialization.gson.GsonAdapters;
+import br.com.caelum.vraptor.serialization.gson.adapters.CalendarDeserializer;
+import br.com.caelum.vraptor.serialization.gson.benchmark.Fixtures.Order;
+import br.com.caelum.vraptor.serialization.gson.benchmark.Fixtures.Row;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+
+import com.google.gson.JsonDeserializer;
+
+/**
+ * Binds request bodies to resource method parameters, creating the
+ * deserialization component per operation as VRaptor does.
+ *
+ * Run with -prof gc to get the allocation rate per operation
+ * (gc.alloc.rate.norm).
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeserializationBenchmark {
+
+	/**
+	 * order: an order with 10 items; large: an order with 10k items;
+	 * calendars: 10k rows of dates in ISO-8601.
+	 */
+	@Param({ "order", "large", "calendars" })
+	public String fixture;
+
+	private byte[] body;
+
+	private ResourceMethod method;
+
+	private final Localization localization = Servlets.localization(new Locale("pt", "BR"));
+
+	private final GsonDeserializationEngine engine = new GsonDeserializationEngine(new DefaultGsonConfiguration(),
+			new GsonAdapters(Servlets.container()));
+
+	private final BodyLimits limits = new BodyLimits(new DefaultGsonConfiguration(), Servlets.servletContext());
+
+	private final ParameterNameProvider names = new ParameterNameProvider() {
+		public String[] parameterNamesFor(AccessibleObject method) {
+			return new String[] { "value" };
+		}
+	};
+
+	public static class Endpoints {
+
+		public void create(Order value) {
+		}
+
+		public void load(Row[] value) {
+		}
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		if ("order".equals(fixture)) {
+			body = bytes(order(10));
+			method = method("create", Order.class);
+		} else if ("large".equals(fixture)) {
+			body = bytes(order(10000));
+			method = method("create", Order.class);
+		} else if ("calendars".equals(fixture)) {
+			body = bytes(rows(10000));
+			method = method("load", Row[].class);
+		} else {
+			throw new IllegalArgumentException("Unknown fixture " + fixture);
+		}
+	}
+
+	@Benchmark
+	public Object gson() {
+		Collection<JsonDeserializer<?>> adapters = Arrays.<JsonDeserializer<?>> asList(new CalendarDeserializer());
+		GsonDeserialization deserialization = new GsonDeserialization(names, adapters, localization, engine,
+				Servlets.request(), JsonMetrics.NONE, limits);
+		return deserialization.deserialize(new ByteArrayInputStream(body), method);
+	}
+
+	private static ResourceMethod method(String name, Class<?> type) throws NoSuchMethodException {
+		Method method = Endpoints.class.getMethod(name, type);
+		return new DefaultResourceMethod(new DefaultResourceClass(Endpoints.class), method);
+	}
+
+	private static String order(int items) {
+		StringBuilder json = new StringBuilder("{\"value\":{\"id\":1,\"notes\":\"Deliver before noon\",")
+				.append("\"client\":{\"name\":\"Renan\",\"email\":\"renan@example.com\",\"age\":30,\"active\":true,")
+				.append("\"address\":{\"street\":\"Rua Vergueiro, 3185\",\"city\":\"S\u00e3o Paulo\",\"zipCode\":\"04101-000\"}},")
+				.append("\"items\":[");
+		for (int i = 0; i < items; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"name\":\"Item ").append(i).append("\",\"price\":").append(9.9 + i)
+					.append(",\"quantity\":").append(1 + i % 5).append('}');
+		}
+		return json.append("]}}").toString();
+	}
+
+	private static String rows(int size) {
+		StringBuilder json = new StringBuilder("{\"value\":[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			String day = String.format("2012-%02d-%02d", 1 + i % 12, 1 + i % 28);
+			json.append("{\"id\":").append(i)
+					.append(",\"created\":\"").append(day)
+					.append("\",\"updated\":\"").append(day).append("T10:15:30.000-03:00")
+					.append("\",\"due\":\"").append(day).append("T23:59:59Z")
+					.append("\",\"logged\":\"").append(day).append("T10:15:30Z\"}");
+		}
+		return json.append("]}").toString();
+	}
+
+	private static byte[] bytes(String json) throws UnsupportedEncodingException {
+		return json.getBytes("UTF-8");
+	}
+}
@@ -0,0 +1,128 @@
+package br.com.caelum.vraptor.serialization.gson.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+/**
+ * Object graphs shared by the benchmarks. They are deterministic, built only
+ * from the requested sizes, so that every run writes and reads the same
+ * documents.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+public final class Fixtures {
+
+	private Fixtures() {
+	}
+
+	public static class Address {
+		String street;
+		String city;
+		String zipCode;
+	}
+
+	public static class Client {
+		String name;
+		String email;
+		int age;
+		boolean active;
+		Address address;
+	}
+
+	public static class Item {
+		String name;
+		double price;
+		int quantity;
+	}
+
+	public static class Order {
+		long id;
+		String notes;
+		Client client;
+		List<Item> items;
+	}
+
+	public static class Node {
+		String name;
+		int depth;
+		List<Node> children;
+	}
+
+	public static class Row {
+		long id;
+		Calendar created;
+		Calendar updated;
+		Calendar due;
+		Date logged;
+	}
+
+	public static Order order(long id, int items) {
+		Address address = new Address();
+		address.street = "Rua Vergueiro, " + id;
+		address.city = "S\u00e3o Paulo";
+		address.zipCode = "04101-000";
+
+		Client client = new Client();
+		client.name = "Client " + id;
+		client.email = "client" + id + "@example.com";
+		client.age = (int) (18 + id % 60);
+		client.active = id % 2 == 0;
+		client.address = address;
+
+		Order order = new Order();
+		order.id = id;
+		order.notes = "Deliver before noon, order " + id;
+		order.client = client;
+		order.items = new ArrayList<Item>(items);
+		for (int i = 0; i < items; i++) {
+			Item item = new Item();
+			item.name = "Item " + i;
+			item.price = 9.9 + i;
+			item.quantity = 1 + i % 5;
+			order.items.add(item);
+		}
+		return order;
+	}
+
+	public static List<Order> orders(int size) {
+		List<Order> orders = new ArrayList<Order>(size);
+		for (int i = 0; i < size; i++) {
+			orders.add(order(i, 3));
+		}
+		return orders;
+	}
+
+	/**
+	 * A tree with branching^depth leaves, to be serialized recursively.
+	 */
+	public static Node tree(int depth, int branching) {
+		Node node = new Node();
+		node.name = "node-" + depth;
+		node.depth = depth;
+		node.children = new ArrayList<Node>(branching);
+		if (depth > 0) {
+			for (int i = 0; i < branching; i++) {
+				node.children.add(tree(depth - 1, branching));
+			}
+		}
+		return node;
+	}
+
+	public static List<Row> rows(int size) {
+		List<Row> rows = new ArrayList<Row>(size);
+		for (int i = 0; i < size; i++) {
+			Row row = new Row();
+			row.id = i;
+			row.created = new GregorianCalendar(2012, i % 12, 1 + i % 28);
+			row.updated = new GregorianCalendar(2012, i % 12, 1 + i % 28, i % 24, i % 60);
+			row.due = new GregorianCalendar(2013, i % 12, 1 + i % 28);
+			row.logged = row.updated.getTime();
+			rows.add(row);
+		}
+		return rows;
+	}
+}
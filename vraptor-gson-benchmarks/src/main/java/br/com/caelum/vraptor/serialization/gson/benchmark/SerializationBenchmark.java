@@ -0,0 +1,167 @@
+package br.com.caelum.vraptor.serialization.gson.benchmark;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.caelum.vraptor.core.MethodInfo;
+import br.com.caelum.vraptor.interceptor.DefaultTypeNameExtractor;
+import br.com.caelum.vraptor.interceptor.TypeNameExtractor;
+import br.com.caelum.vraptor.serialization.Serialization;
+import br.com.caelum.vraptor.serialization.NullProxyInitializer;
+import br.com.caelum.vraptor.serialization.ProxyInitializer;
+import br.com.caelum.vraptor.serialization.Serializer;
+import br.com.caelum.vraptor.serialization.gson.AsyncSerializationExecutor;
+import br.com.caelum.vraptor.serialization.gson.CborSerialization;
+import br.com.caelum.vraptor.serialization.gson.DefaultGsonConfiguration;
+import br.com.caelum.vraptor.serialization.gson.GsonAdapters;
+import br.com.caelum.vraptor.serialization.gson.GsonJSONSerialization;
+import br.com.caelum.vraptor.serialization.gson.GsonSerializationEngine;
+import br.com.caelum.vraptor.serialization.gson.adapters.CalendarSerializer;
+import br.com.caelum.vraptor.serialization.gson.adapters.DateSerializer;
+import br.com.caelum.vraptor.serialization.gson.metrics.JsonMetrics;
+import br.com.caelum.vraptor.serialization.xstream.XStreamBuilderImpl;
+import br.com.caelum.vraptor.serialization.xstream.XStreamConverters;
+import br.com.caelum.vraptor.serialization.xstream.XStreamJSONSerialization;
+
+import com.google.gson.JsonSerializer;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.SingleValueConverter;
+
+/**
+ * Serializes each fixture the way a request does: a new serialization
+ * component per operation, sharing only the application scoped engine. The
+ * xstream benchmark is VRaptor's stock JSON serialization, as a baseline, and
+ * the cbor benchmark writes the same data as binary CBOR; the value returned
+ * is the size of the body.
+ *
+ * Run with -prof gc to get the allocation rate per operation
+ * (gc.alloc.rate.norm).
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+	/**
+	 * flat: a single order with its primitive fields; deep: a recursive tree
+	 * of 3^8 leaves; list-10k and list-100k: lists of orders; projection: an
+	 * order with included and excluded paths; calendars: 10k rows of Calendar
+	 * and Date fields.
+	 */
+	@Param({ "flat", "deep", "list-10k", "list-100k", "projection", "calendars" })
+	public String fixture;
+
+	private Object root;
+
+	private String[] includes = new String[0];
+
+	private String[] excludes = new String[0];
+
+	private boolean recursive;
+
+	private final Servlets.Sink sink = new Servlets.Sink();
+
+	private final HttpServletResponse response = Servlets.response(sink);
+
+	private final HttpServletRequest request = Servlets.request();
+
+	private final TypeNameExtractor extractor = new DefaultTypeNameExtractor();
+
+	private final ProxyInitializer initializer = new NullProxyInitializer();
+
+	private final GsonSerializationEngine engine = new GsonSerializationEngine(new DefaultGsonConfiguration(),
+			new GsonAdapters(Servlets.container()));
+
+	private final MethodInfo methodInfo = Servlets.methodInfo();
+
+	private Collection<JsonSerializer<?>> serializers;
+
+	private AsyncSerializationExecutor executor;
+
+	private XStreamConverters converters;
+
+	@Setup
+	public void setUp() {
+		DefaultGsonConfiguration configuration = new DefaultGsonConfiguration();
+		serializers = Arrays.<JsonSerializer<?>> asList(new CalendarSerializer(configuration), new DateSerializer(
+				configuration));
+		executor = new AsyncSerializationExecutor(configuration, Servlets.servletContext());
+		converters = new XStreamConverters(Collections.<Converter> emptyList(),
+				Collections.<SingleValueConverter> emptyList());
+
+		if ("flat".equals(fixture)) {
+			root = Fixtures.order(1, 0);
+		} else if ("deep".equals(fixture)) {
+			root = Fixtures.tree(8, 3);
+			recursive = true;
+		} else if ("list-10k".equals(fixture)) {
+			root = Fixtures.orders(10000);
+		} else if ("list-100k".equals(fixture)) {
+			root = Fixtures.orders(100000);
+		} else if ("projection".equals(fixture)) {
+			root = Fixtures.order(1, 100);
+			includes = new String[] { "client", "client.address", "items" };
+			excludes = new String[] { "notes", "client.email" };
+		} else if ("calendars".equals(fixture)) {
+			root = Fixtures.rows(10000);
+		} else {
+			throw new IllegalArgumentException("Unknown fixture " + fixture);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public long gson() {
+		return serialize(new GsonJSONSerialization(response, request, extractor, initializer, serializers, engine,
+				methodInfo, JsonMetrics.NONE, executor));
+	}
+
+	@Benchmark
+	public long cbor() {
+		return serialize(new CborSerialization(response, request, extractor, initializer, serializers, engine,
+				methodInfo, JsonMetrics.NONE, executor));
+	}
+
+	@Benchmark
+	public long xstream() {
+		return serialize(new XStreamJSONSerialization(response, extractor, initializer, new XStreamBuilderImpl(
+				converters, extractor)));
+	}
+
+	private long serialize(Serialization serialization) {
+		Serializer serializer = serialization.from(root).include(includes).exclude(excludes);
+		if (recursive) {
+			serializer.recursive();
+		}
+		serializer.serialize();
+		return sink.written();
+	}
+}
@@ -0,0 +1,164 @@
+package br.com.caelum.vraptor.serialization.gson.benchmark;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Locale;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import br.com.caelum.vraptor.core.Localization;
+import br.com.caelum.vraptor.core.MethodInfo;
+import br.com.caelum.vraptor.ioc.Container;
+
+/**
+ * Minimal servlet and VRaptor collaborators, so that the benchmarks measure
+ * serialization and not a mocking library.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+final class Servlets {
+
+	private Servlets() {
+	}
+
+	/**
+	 * A response whose writer and output stream discard everything, counting
+	 * what was written.
+	 */
+	static HttpServletResponse response(final Sink sink) {
+		return stub(HttpServletResponse.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getWriter")) {
+					return new PrintWriter(sink);
+				}
+				if (method.getName().equals("getOutputStream")) {
+					return new ServletOutputStream() {
+						@Override
+						public void write(int b) {
+							sink.written++;
+						}
+
+						@Override
+						public void write(byte[] bytes, int offset, int length) {
+							sink.written += length;
+						}
+					};
+				}
+				return defaultValue(method);
+			}
+		});
+	}
+
+	static HttpServletRequest request() {
+		return stub(HttpServletRequest.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getCharacterEncoding")) {
+					return "UTF-8";
+				}
+				return defaultValue(method);
+			}
+		});
+	}
+
+	static Localization localization(final Locale locale) {
+		return stub(Localization.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getLocale")) {
+					return locale;
+				}
+				return defaultValue(method);
+			}
+		});
+	}
+
+	/**
+	 * Outside of a request there is no resource method, so nothing is measured.
+	 */
+	static MethodInfo methodInfo() {
+		return stub(MethodInfo.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return defaultValue(method);
+			}
+		});
+	}
+
+	static ServletContext servletContext() {
+		return stub(ServletContext.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getContextPath")) {
+					return "/benchmark";
+				}
+				return defaultValue(method);
+			}
+		});
+	}
+
+	/**
+	 * A container without components, since the benchmarks register no
+	 * TypeAdapter components.
+	 */
+	static Container container() {
+		return stub(Container.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return defaultValue(method);
+			}
+		});
+	}
+
+	private static <T> T stub(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(Servlets.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	private static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return false;
+		}
+		if (type == int.class) {
+			return 0;
+		}
+		if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	static final class Sink extends Writer {
+
+		private long written;
+
+		@Override
+		public void write(char[] buffer, int offset, int length) {
+			written += length;
+		}
+
+		@Override
+		public void write(String value, int offset, int length) {
+			written += length;
+		}
+
+		@Override
+		public void write(int c) {
+			written++;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		long written() {
+			return written;
+		}
+	}
+}
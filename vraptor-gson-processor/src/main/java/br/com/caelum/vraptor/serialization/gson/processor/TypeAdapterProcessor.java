@@ -0,0 +1,382 @@
+package br.com.caelum.vraptor.serialization.gson.processor;
+
+import static javax.lang.model.element.Modifier.ABSTRACT;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static javax.lang.model.element.Modifier.TRANSIENT;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Generates a streaming TypeAdapter for each class annotated with
+ * GenerateAdapter. The adapter reads and writes fields directly (or through
+ * their accessors when they are private), so Gson's reflective adapter is not
+ * used for those classes. Exclusion decisions are still taken at runtime, by
+ * the GeneratedTypeAdapter base class.
+ *
+ * @author Renan Reis
+ * @author Guilherme Mangabeira
+ */
+@SupportedAnnotationTypes(TypeAdapterProcessor.ANNOTATION)
+public class TypeAdapterProcessor extends AbstractProcessor {
+
+	static final String ANNOTATION = "br.com.caelum.vraptor.serialization.gson.GenerateAdapter";
+
+	private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+	private static final String BASE_CLASS = "br.com.caelum.vraptor.serialization.gson.GeneratedTypeAdapter";
+
+	private static final String FACTORY = "br.com.caelum.vraptor.serialization.gson.GeneratedAdapters";
+
+	private static final String SUFFIX = "_GsonAdapter";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				try {
+					generate(validate(element));
+				} catch (InvalidTypeException e) {
+					processingEnv.getMessager().printMessage(Kind.ERROR, e.getMessage(), e.element);
+				} catch (IOException e) {
+					processingEnv.getMessager().printMessage(Kind.ERROR,
+							"Unable to write generated adapter: " + e.getMessage(), element);
+				}
+			}
+		}
+		return true;
+	}
+
+	private TypeElement validate(Element element) {
+		if (element.getKind() != ElementKind.CLASS) {
+			throw new InvalidTypeException(element, "@GenerateAdapter is only supported on classes");
+		}
+
+		TypeElement type = (TypeElement) element;
+		Set<javax.lang.model.element.Modifier> modifiers = type.getModifiers();
+		if (modifiers.contains(ABSTRACT) || modifiers.contains(PRIVATE)) {
+			throw new InvalidTypeException(element, "@GenerateAdapter classes must be concrete and not private");
+		}
+		if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS
+				|| (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(STATIC))) {
+			throw new InvalidTypeException(element, "@GenerateAdapter classes must be top level or static");
+		}
+		if (!type.getTypeParameters().isEmpty()) {
+			throw new InvalidTypeException(element, "@GenerateAdapter is not supported on generic classes");
+		}
+
+		return type;
+	}
+
+	private void generate(TypeElement type) throws IOException {
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String adapterName = (packageName.length() == 0 ? binaryName : binaryName.substring(packageName
+				.length() + 1)) + SUFFIX;
+		String typeName = type.getQualifiedName().toString();
+
+		List<Property> properties = propertiesOf(type, packageName);
+
+		PrintWriter out = new PrintWriter(processingEnv.getFiler()
+				.createSourceFile(qualified(packageName, adapterName), type).openWriter());
+		try {
+			out.println("// Generated by vraptor-gson-processor from " + typeName + ". Do not edit.");
+			if (packageName.length() > 0) {
+				out.println("package " + packageName + ";");
+			}
+			out.println();
+			out.println("public final class " + adapterName + " extends " + BASE_CLASS + "<" + typeName + "> {");
+			out.println();
+
+			writeConstructor(out, adapterName, typeName, properties);
+			writeWrite(out, typeName, properties);
+			writeRead(out, type, typeName, packageName, properties);
+
+			out.println("}");
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeConstructor(PrintWriter out, String adapterName, String typeName, List<Property> properties) {
+		out.println("\tpublic " + adapterName + "(com.google.gson.Gson gson, " + FACTORY + " factory) {");
+		out.print("\t\tsuper(gson, factory, " + typeName + ".class");
+		for (Property property : properties) {
+			out.println(",");
+			out.print("\t\t\t\tfield(" + property.declaringClass + ".class, \"" + property.fieldName + "\")");
+		}
+		out.println(");");
+		out.println("\t}");
+		out.println();
+	}
+
+	private void writeWrite(PrintWriter out, String typeName, List<Property> properties) {
+		out.println("\t@Override");
+		out.println("\tpublic void write(com.google.gson.stream.JsonWriter out, " + typeName
+				+ " value) throws java.io.IOException {");
+		out.println("\t\tif (value == null) {");
+		out.println("\t\t\tout.nullValue();");
+		out.println("\t\t\treturn;");
+		out.println("\t\t}");
+		out.println("\t\tout.beginObject();");
+		for (int i = 0; i < properties.size(); i++) {
+			Property property = properties.get(i);
+			out.println("\t\tif (isSerialized(" + i + ")) {");
+			out.println("\t\t\tout.name(\"" + escape(property.jsonName) + "\");");
+			out.println("\t\t\twrite(out, " + i + ", value." + property.getter + ");");
+			out.println("\t\t}");
+		}
+		out.println("\t\tout.endObject();");
+		out.println("\t}");
+		out.println();
+	}
+
+	private void writeRead(PrintWriter out, TypeElement type, String typeName, String packageName,
+			List<Property> properties) {
+		out.println("\t@Override");
+		out.println("\t@SuppressWarnings(\"unchecked\")");
+		out.println("\tpublic " + typeName + " read(com.google.gson.stream.JsonReader in) throws java.io.IOException {");
+		out.println("\t\tif (in.peek() == com.google.gson.stream.JsonToken.NULL) {");
+		out.println("\t\t\tin.nextNull();");
+		out.println("\t\t\treturn null;");
+		out.println("\t\t}");
+		out.println("\t\t" + typeName + " value = "
+				+ (hasAccessibleConstructor(type, packageName) ? "new " + typeName + "()" : "newInstance()") + ";");
+		out.println("\t\tin.beginObject();");
+		out.println("\t\twhile (in.hasNext()) {");
+		out.println("\t\t\tString name = in.nextName();");
+		for (int i = 0; i < properties.size(); i++) {
+			Property property = properties.get(i);
+			out.println("\t\t\t" + (i == 0 ? "" : "} else ") + "if (name.equals(\"" + escape(property.jsonName)
+					+ "\") && isDeserialized(" + i + ")) {");
+			if (property.type.getKind().isPrimitive()) {
+				String boxed = processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) property.type)
+						.getQualifiedName().toString();
+				out.println("\t\t\t\tObject read = read(in, " + i + ");");
+				out.println("\t\t\t\tif (read != null) {");
+				out.println("\t\t\t\t\t" + property.assignment("(" + boxed + ") read") + ";");
+				out.println("\t\t\t\t}");
+			} else {
+				out.println("\t\t\t\t" + property.assignment("(" + property.type + ") read(in, " + i + ")") + ";");
+			}
+		}
+		out.println("\t\t\t" + (properties.isEmpty() ? "" : "} else ") + "{");
+		out.println("\t\t\t\tin.skipValue();");
+		out.println("\t\t\t}");
+		out.println("\t\t}");
+		out.println("\t\tin.endObject();");
+		out.println("\t\treturn value;");
+		out.println("\t}");
+	}
+
+	/**
+	 * Fields in the order Gson's reflective adapter writes them: the class own
+	 * fields first, then each superclass.
+	 */
+	private List<Property> propertiesOf(TypeElement type, String packageName) {
+		List<Property> properties = new ArrayList<Property>();
+		Set<String> names = new HashSet<String>();
+
+		TypeElement current = type;
+		while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+			for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+				if (field.getModifiers().contains(STATIC) || field.getModifiers().contains(TRANSIENT)) {
+					continue;
+				}
+				if (field.getModifiers().contains(FINAL)) {
+					throw new InvalidTypeException(field, "Final fields are not supported by @GenerateAdapter, "
+							+ "leave " + type + " to Gson's reflective adapter");
+				}
+				if (hasTypeVariables(field.asType())) {
+					throw new InvalidTypeException(field, "Fields with type variables are not supported by @GenerateAdapter");
+				}
+
+				Property property = new Property(current, field, jsonNameOf(field));
+				if (!names.add(property.jsonName)) {
+					throw new InvalidTypeException(field, type + " declares multiple JSON fields named "
+							+ property.jsonName);
+				}
+				resolveAccess(type, packageName, property);
+				properties.add(property);
+			}
+
+			TypeMirror superclass = current.getSuperclass();
+			current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass)
+					.asElement() : null;
+		}
+
+		return properties;
+	}
+
+	private void resolveAccess(TypeElement type, String packageName, Property property) {
+		if (isAccessible(property.field, packageName)) {
+			property.getter = property.fieldName;
+			property.setter = null;
+			return;
+		}
+
+		String capitalized = Character.toUpperCase(property.fieldName.charAt(0)) + property.fieldName.substring(1);
+		ExecutableElement getter = null;
+		ExecutableElement setter = null;
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+			String name = method.getSimpleName().toString();
+			if (method.getModifiers().contains(STATIC) || !isAccessible(method, packageName)) {
+				continue;
+			}
+			if (method.getParameters().isEmpty()
+					&& (name.equals("get" + capitalized) || name.equals("is" + capitalized))
+					&& processingEnv.getTypeUtils().isSameType(method.getReturnType(), property.type)) {
+				getter = method;
+			}
+			if (name.equals("set" + capitalized) && method.getParameters().size() == 1
+					&& processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), property.type)) {
+				setter = method;
+			}
+		}
+
+		if (getter == null || setter == null) {
+			throw new InvalidTypeException(property.field, "Field " + property.fieldName
+					+ " must be accessible from package " + packageName + " or have a getter and a setter");
+		}
+		property.getter = getter.getSimpleName() + "()";
+		property.setter = setter.getSimpleName().toString();
+	}
+
+	private boolean isAccessible(Element member, String packageName) {
+		Set<javax.lang.model.element.Modifier> modifiers = member.getModifiers();
+		if (modifiers.contains(PRIVATE)) {
+			return false;
+		}
+		if (modifiers.contains(PUBLIC)) {
+			return true;
+		}
+		return processingEnv.getElementUtils().getPackageOf(member).getQualifiedName().contentEquals(packageName);
+	}
+
+	private boolean hasAccessibleConstructor(TypeElement type, String packageName) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && isAccessible(constructor, packageName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String jsonNameOf(VariableElement field) {
+		for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (annotationType.getQualifiedName().contentEquals(SERIALIZED_NAME)) {
+				for (Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation
+						.getElementValues().entrySet()) {
+					return value.getValue().getValue().toString();
+				}
+			}
+		}
+		return field.getSimpleName().toString();
+	}
+
+	private boolean hasTypeVariables(TypeMirror type) {
+		switch (type.getKind()) {
+		case TYPEVAR:
+			return true;
+		case ARRAY:
+			return hasTypeVariables(((ArrayType) type).getComponentType());
+		case WILDCARD:
+			WildcardType wildcard = (WildcardType) type;
+			return (wildcard.getExtendsBound() != null && hasTypeVariables(wildcard.getExtendsBound()))
+					|| (wildcard.getSuperBound() != null && hasTypeVariables(wildcard.getSuperBound()));
+		case DECLARED:
+			for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+				if (hasTypeVariables(argument)) {
+					return true;
+				}
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private static String qualified(String packageName, String simpleName) {
+		return packageName.length() == 0 ? simpleName : packageName + "." + simpleName;
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private static class Property {
+
+		final String declaringClass;
+
+		final VariableElement field;
+
+		final String fieldName;
+
+		final String jsonName;
+
+		final TypeMirror type;
+
+		String getter;
+
+		String setter;
+
+		Property(TypeElement declaringClass, VariableElement field, String jsonName) {
+			this.declaringClass = declaringClass.getQualifiedName().toString();
+			this.field = field;
+			this.fieldName = field.getSimpleName().toString();
+			this.jsonName = jsonName;
+			this.type = field.asType();
+		}
+
+		String assignment(String expression) {
+			return setter == null ? "value." + fieldName + " = " + expression : "value." + setter + "("
+					+ expression + ")";
+		}
+	}
+
+	private static class InvalidTypeException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		final Element element;
+
+		InvalidTypeException(Element element, String message) {
+			super(message);
+			this.element = element;
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package br.com.caelum.vraptor.serialization.gson.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TypeAdapterProcessorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+	private DiagnosticCollector<JavaFileObject> diagnostics;
+
+	@Before
+	public void setUp() {
+		diagnostics = new DiagnosticCollector<JavaFileObject>();
+	}
+
+	@Test
+	public void shouldReadAndWriteFieldsDirectlyOrThroughTheirAccessors() throws IOException {
+		boolean compiled = process(source("Invoice", "package invoices;\n"
+				+ "@br.com.caelum.vraptor.serialization.gson.GenerateAdapter\n"
+				+ "public class Invoice {\n"
+				+ "	String customer;\n"
+				+ "	private double total;\n"
+				+ "	transient String cache;\n"
+				+ "	static int count;\n"
+				+ "	public double getTotal() { return total; }\n"
+				+ "	public void setTotal(double total) { this.total = total; }\n"
+				+ "}\n"));
+
+		assertTrue(errors(), compiled);
+
+		String adapter = generated("invoices/Invoice_GsonAdapter.java");
+		assertTrue(adapter, adapter.contains("public final class Invoice_GsonAdapter extends "
+				+ "br.com.caelum.vraptor.serialization.gson.GeneratedTypeAdapter<invoices.Invoice>"));
+		assertTrue(adapter, adapter.contains("write(out, 0, value.customer);"));
+		assertTrue(adapter, adapter.contains("write(out, 1, value.getTotal());"));
+		assertTrue(adapter, adapter.contains("value.customer = (java.lang.String) read(in, 0);"));
+		assertTrue(adapter, adapter.contains("value.setTotal((java.lang.Double) read);"));
+		assertFalse(adapter, adapter.contains("cache"));
+		assertFalse(adapter, adapter.contains("count"));
+	}
+
+	@Test
+	public void shouldNameAdaptersOfNestedClassesAfterTheirBinaryName() throws IOException {
+		boolean compiled = process(source("Orders", "package invoices;\n"
+				+ "public class Orders {\n"
+				+ "	@br.com.caelum.vraptor.serialization.gson.GenerateAdapter\n"
+				+ "	public static class Order { long id; }\n"
+				+ "}\n"));
+
+		assertTrue(errors(), compiled);
+
+		assertTrue(generated("invoices/Orders$Order_GsonAdapter.java").contains("invoices.Orders.Order value"));
+	}
+
+	@Test
+	public void shouldRefuseFinalFields() {
+		assertFalse(process(source("Money", "package invoices;\n"
+				+ "@br.com.caelum.vraptor.serialization.gson.GenerateAdapter\n"
+				+ "public class Money {\n"
+				+ "	final String currency = \"BRL\";\n"
+				+ "	long cents;\n"
+				+ "}\n")));
+
+		assertEquals("Final fields are not supported by @GenerateAdapter, "
+				+ "leave invoices.Money to Gson's reflective adapter\n", errors());
+	}
+
+	@Test
+	public void shouldRefuseGenericClasses() {
+		assertFalse(process(source("Box", "package invoices;\n"
+				+ "@br.com.caelum.vraptor.serialization.gson.GenerateAdapter\n"
+				+ "public class Box<T> { T value; }\n")));
+
+		assertEquals("@GenerateAdapter is not supported on generic classes\n", errors());
+	}
+
+	@Test
+	public void shouldRefusePrivateFieldsWithoutAccessors() {
+		assertFalse(process(source("Secret", "package invoices;\n"
+				+ "@br.com.caelum.vraptor.serialization.gson.GenerateAdapter\n"
+				+ "public class Secret { private String value; }\n")));
+
+		assertEquals("Field value must be accessible from package invoices or have a getter and a setter\n",
+				errors());
+	}
+
+	/**
+	 * Compiles the source and the adapter generated for it against the
+	 * runtime classes of vraptor-gson.
+	 */
+	private boolean process(JavaFileObject source) {
+		File generated = new File(folder.getRoot(), "generated");
+		File classes = new File(folder.getRoot(), "classes");
+		generated.mkdirs();
+		classes.mkdirs();
+		List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d",
+				classes.getPath(), "-s", generated.getPath());
+		CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, Arrays.asList(source));
+		task.setProcessors(Arrays.asList(new TypeAdapterProcessor()));
+		return task.call();
+	}
+
+	private String generated(String path) throws IOException {
+		Scanner scanner = new Scanner(new File(folder.getRoot(), "generated/" + path), "UTF-8");
+		try {
+			return scanner.useDelimiter("\\A").next();
+		} finally {
+			scanner.close();
+		}
+	}
+
+	private String errors() {
+		StringBuilder errors = new StringBuilder();
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+				errors.append(diagnostic.getMessage(null)).append('\n');
+			}
+		}
+		return errors.toString();
+	}
+
+	private static JavaFileObject source(String name, final String code) {
+		return new SimpleJavaFileObject(URI.create("string:///invoices/" + name + ".java"), JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return code;
+			}
+		};
+	}
+}